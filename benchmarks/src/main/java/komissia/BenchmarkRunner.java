@@ -0,0 +1,30 @@
+package komissia;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cmdOptions);
+        if (!cmdOptions.getResultFormat().hasValue()) {
+            Path resultsDir = Paths.get("results");
+            Files.createDirectories(resultsDir);
+            String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            Path resultFile = resultsDir.resolve("jmh-" + stamp + ".json");
+            options.resultFormat(ResultFormatType.JSON).result(resultFile.toString());
+            System.out.println("Результаты будут сохранены в " + resultFile.toAbsolutePath());
+        }
+        new Runner(options.build()).run();
+    }
+}
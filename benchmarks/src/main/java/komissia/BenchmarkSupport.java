@@ -0,0 +1,38 @@
+package komissia;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+public class BenchmarkSupport {
+
+    static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+    private BenchmarkSupport() {
+    }
+
+    static DirectorySyncAppSimple newApp(Path workDir, String... args) throws IOException {
+        String[] fullArgs = new String[args.length + 1];
+        System.arraycopy(args, 0, fullArgs, 0, args.length);
+        fullArgs[args.length] = "--log=" + workDir.resolve("bench.log");
+        DirectorySyncAppSimple app = new DirectorySyncAppSimple();
+        app.parseArguments(fullArgs);
+        app.setupLogger();
+        Logger logger = Logger.getLogger("SimpleSync");
+        for (Handler handler : logger.getHandlers()) {
+            if (handler instanceof AsyncLogHandler && ((AsyncLogHandler) handler).isConsole()) {
+                logger.removeHandler(handler);
+                handler.close();
+            }
+        }
+        return app;
+    }
+
+    static Path createWorkDir() throws IOException {
+        return Files.createTempDirectory("komissia-bench");
+    }
+}
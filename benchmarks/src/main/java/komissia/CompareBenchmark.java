@@ -0,0 +1,33 @@
+package komissia;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompareBenchmark {
+
+    DirectorySyncAppSimple app;
+
+    @Setup(Level.Trial)
+    public void setUp(TreeState tree) throws IOException {
+        app = tree.newApp();
+        app.scanBothDirectories();
+    }
+
+    @Benchmark
+    public void compareLists() {
+        app.compareLists();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.closeLogger();
+    }
+}
@@ -0,0 +1,77 @@
+package komissia;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ComparisonMemoryBenchmark {
+
+    static class LegacyComparisonInfo {
+        String relativePath;
+        String status;
+        Path pathInA;
+        Path pathInB;
+        int displayIndex;
+
+        LegacyComparisonInfo(String relativePath, String status, Path pathInA, Path pathInB) {
+            this.relativePath = relativePath;
+            this.status = status;
+            this.pathInA = pathInA;
+            this.pathInB = pathInB;
+        }
+    }
+
+    private static final String[] LEGACY_STATUSES = {"ИДЕНТИЧНЫЙ", "ИЗМЕНЕН (А новее)", "НОВЫЙ (в А)", "НОВЫЙ (в B)"};
+    private static final FileStatus[] STATUSES = {FileStatus.IDENTICAL, FileStatus.MODIFIED_A_NEWER, FileStatus.NEW_IN_A, FileStatus.NEW_IN_B};
+
+    public static void main(String[] args) {
+        int entries = Integer.getInteger("bench.entries", 1_000_000);
+        int filesPerDir = Integer.getInteger("bench.filesPerDir", 100);
+        Path rootA = Paths.get("/data/mirror/source");
+        Path rootB = Paths.get("/data/mirror/target");
+
+        long baseline = usedHeap();
+        List<LegacyComparisonInfo> legacy = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            String relativePath = relativePath(i, filesPerDir);
+            int kind = i % STATUSES.length;
+            legacy.add(new LegacyComparisonInfo(relativePath, LEGACY_STATUSES[kind],
+                    kind != 3 ? rootA.resolve(relativePath) : null, kind != 2 ? rootB.resolve(relativePath) : null));
+        }
+        long legacyBytes = usedHeap() - baseline;
+        System.out.printf("legacy List<ComparisonInfo>: %,d entries, %,d bytes, %.1f bytes/entry%n",
+                legacy.size(), legacyBytes, legacyBytes / (double) entries);
+        legacy = null;
+
+        baseline = usedHeap();
+        ComparisonTable.Builder builder = new ComparisonTable.Builder();
+        for (int i = 0; i < entries; i++) {
+            int kind = i % STATUSES.length;
+            builder.add(relativePath(i, filesPerDir), STATUSES[kind], kind != 3, kind != 2);
+        }
+        ComparisonTable table = builder.build();
+        builder = null;
+        long tableBytes = usedHeap() - baseline;
+        System.out.printf("ComparisonTable:             %,d entries, %,d bytes, %.1f bytes/entry (estimate %.1f)%n",
+                table.size(), tableBytes, tableBytes / (double) entries, table.estimatedBytes() / (double) entries);
+    }
+
+    static String relativePath(int i, int filesPerDir) {
+        int dir = i / filesPerDir;
+        return "projects/p" + (dir / 1000) + "/module" + (dir % 1000) + "/src/file_" + i + ".dat";
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
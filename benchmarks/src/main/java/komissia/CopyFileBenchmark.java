@@ -0,0 +1,61 @@
+package komissia;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CopyFileBenchmark {
+
+    @Param({"4096", "67108864", "2147483648"})
+    public long size;
+
+    Path workDir;
+    Path source;
+    Path target;
+
+    @Setup(Level.Trial)
+    public void createSource() throws IOException {
+        workDir = BenchmarkSupport.createWorkDir();
+        source = workDir.resolve("source.dat");
+        target = workDir.resolve("target.dat");
+        byte[] chunk = new byte[1 << 20];
+        new Random(size).nextBytes(chunk);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(source), chunk.length)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+            }
+        }
+    }
+
+    @Benchmark
+    public void legacyStreamCopy() throws IOException {
+        try (InputStream in = new FileInputStream(source.toFile());
+             OutputStream out = new FileOutputStream(target.toFile())) {
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                out.write(buffer, 0, length);
+            }
+        }
+        Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+    }
+
+    @Benchmark
+    public long fileCopier() throws IOException {
+        return FileCopier.copy(source, target);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        SyntheticTree.delete(workDir);
+    }
+}
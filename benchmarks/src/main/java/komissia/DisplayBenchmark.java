@@ -0,0 +1,46 @@
+package komissia;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DisplayBenchmark {
+
+    DirectorySyncAppSimple app;
+    PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp(TreeState tree) throws IOException {
+        app = tree.newApp();
+        app.scanBothDirectories();
+        app.compareLists();
+        app.assignDisplayIndexes();
+        originalOut = System.out;
+        System.setOut(BenchmarkSupport.NULL_OUT);
+    }
+
+    @Benchmark
+    public void displayTreeA() {
+        app.displayTree("A", true, true, true);
+    }
+
+    @Benchmark
+    public void displayTreeChangedOnly() {
+        app.displayTree("A", true, true, false);
+        app.displayTree("B", false, true, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+        app.closeLogger();
+    }
+}
@@ -0,0 +1,46 @@
+package komissia;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EndToEndBenchmark {
+
+    DirectorySyncAppSimple app;
+    PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp(TreeState tree) throws IOException {
+        app = tree.newApp();
+        originalOut = System.out;
+        System.setOut(BenchmarkSupport.NULL_OUT);
+    }
+
+    @Setup(Level.Invocation)
+    public void cleanMergeTarget(TreeState tree) throws IOException {
+        SyntheticTree.delete(tree.rootC);
+    }
+
+    @Benchmark
+    public void analyzeAndMergeToC() {
+        app.scanBothDirectories();
+        app.compareLists();
+        app.assignDisplayIndexes();
+        app.synchronizeFiles("MERGE_TO_C", Set.of(), false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+        app.closeLogger();
+    }
+}
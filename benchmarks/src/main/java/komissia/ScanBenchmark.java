@@ -0,0 +1,38 @@
+package komissia;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScanBenchmark {
+
+    DirectorySyncAppSimple app;
+
+    @Setup(Level.Trial)
+    public void setUp(TreeState tree) throws IOException {
+        app = tree.newApp();
+    }
+
+    @Benchmark
+    public Map<String, ScanEntry> scanSingleTree(TreeState tree) {
+        return app.scanDirectory(tree.rootA);
+    }
+
+    @Benchmark
+    public void scanBothTrees() {
+        app.scanBothDirectories();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        app.closeLogger();
+    }
+}
@@ -0,0 +1,78 @@
+package komissia;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+public class SyntheticTree {
+
+    enum Shape {
+        DEEP, WIDE
+    }
+
+    private SyntheticTree() {
+    }
+
+    static List<String> layout(Shape shape, int files) {
+        List<String> paths = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            if (shape == Shape.DEEP) {
+                StringBuilder dir = new StringBuilder();
+                for (int level = 0, n = i / 10; level < 8; level++, n /= 4) {
+                    dir.append("d").append(n % 4).append('/');
+                }
+                paths.add(dir + "file_" + i + ".dat");
+            } else {
+                paths.add("dir_" + (i / 500) + "/file_" + i + ".dat");
+            }
+        }
+        return paths;
+    }
+
+    static void generate(Path rootA, Path rootB, Shape shape, int files, int fileSize, int diffPercent) throws IOException {
+        Random random = new Random(42);
+        byte[] content = new byte[fileSize];
+        FileTime baseTime = FileTime.fromMillis(1_600_000_000_000L);
+        for (String relativePath : layout(shape, files)) {
+            random.nextBytes(content);
+            Path fileA = rootA.resolve(relativePath);
+            write(fileA, content);
+            Files.setLastModifiedTime(fileA, baseTime);
+
+            int roll = random.nextInt(100);
+            if (roll >= diffPercent) {
+                Path fileB = rootB.resolve(relativePath);
+                write(fileB, content);
+                Files.setLastModifiedTime(fileB, baseTime);
+            } else if (roll % 3 == 0) {
+                write(rootB.resolve(relativePath + ".only_b"), content);
+            } else if (roll % 3 == 1) {
+                content[0] ^= 1;
+                write(rootB.resolve(relativePath), content);
+            }
+        }
+        Files.createDirectories(rootB);
+    }
+
+    private static void write(Path file, byte[] content) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(content);
+        }
+    }
+
+    static void delete(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(root)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
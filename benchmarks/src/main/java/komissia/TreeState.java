@@ -0,0 +1,51 @@
+package komissia;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+public class TreeState {
+
+    @Param({"deep", "wide"})
+    public String shape;
+
+    @Param({"20000"})
+    public int files;
+
+    @Param({"1024"})
+    public int fileSize;
+
+    @Param({"10"})
+    public int diffPercent;
+
+    @Param({"4"})
+    public int threads;
+
+    Path workDir;
+    Path rootA;
+    Path rootB;
+    Path rootC;
+
+    @Setup(Level.Trial)
+    public void createTrees() throws IOException {
+        workDir = BenchmarkSupport.createWorkDir();
+        rootA = workDir.resolve("a");
+        rootB = workDir.resolve("b");
+        rootC = workDir.resolve("c");
+        SyntheticTree.generate(rootA, rootB, SyntheticTree.Shape.valueOf(shape.toUpperCase(Locale.ROOT)),
+                files, fileSize, diffPercent);
+    }
+
+    DirectorySyncAppSimple newApp() throws IOException {
+        return BenchmarkSupport.newApp(workDir, rootA.toString(), rootB.toString(), rootC.toString(),
+                "--threads=" + threads, "--copy-threads=" + threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTrees() throws IOException {
+        SyntheticTree.delete(workDir);
+    }
+}
@@ -0,0 +1,370 @@
+package komissia;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class AgentClient implements Closeable {
+
+    static final String SCHEME = "agent://";
+
+    static class Address {
+        final String host;
+        final int port;
+
+        Address(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        static Address parse(String uri) {
+            String hostPort = uri.substring(SCHEME.length());
+            int slash = hostPort.indexOf('/');
+            if (slash >= 0) {
+                hostPort = hostPort.substring(0, slash);
+            }
+            int colon = hostPort.lastIndexOf(':');
+            if (colon < 0) {
+                return new Address(hostPort, SyncAgent.DEFAULT_PORT);
+            }
+            return new Address(hostPort.substring(0, colon), Integer.parseInt(hostPort.substring(colon + 1)));
+        }
+
+        Path displayRoot() {
+            return Paths.get("agent", host + "_" + port);
+        }
+
+        @Override
+        public String toString() {
+            return SCHEME + host + ":" + port;
+        }
+    }
+
+    private final Address address;
+    private final Logger logger;
+    private final SyncMetrics metrics;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private String remoteRoot;
+    private final List<String> remoteRules = new ArrayList<>();
+
+    private AgentClient(Address address, Socket socket, Logger logger, SyncMetrics metrics) throws IOException {
+        this.address = address;
+        this.logger = logger;
+        this.metrics = metrics;
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), SyncAgent.STREAM_BUFFER));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), SyncAgent.STREAM_BUFFER));
+    }
+
+    static AgentClient connect(Address address, String token, Logger logger, SyncMetrics metrics) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(address.host, address.port), 10_000);
+            AgentClient client = new AgentClient(address, socket, logger, metrics);
+            client.out.writeInt(SyncAgent.MAGIC);
+            client.out.writeInt(SyncAgent.PROTOCOL_VERSION);
+            client.out.writeUTF(token != null ? token : "");
+            client.out.flush();
+            if (client.in.readInt() != SyncAgent.MAGIC || client.in.readInt() != SyncAgent.PROTOCOL_VERSION) {
+                throw new IOException("Неподдерживаемый протокол агента " + address);
+            }
+            boolean accepted = client.in.readBoolean();
+            String message = client.in.readUTF();
+            if (!accepted) {
+                throw new IOException("Агент " + address + " отклонил подключение: " + message);
+            }
+            client.remoteRoot = message;
+            int ruleCount = SyncAgent.readVarInt(client.in);
+            for (int i = 0; i < ruleCount; i++) {
+                client.remoteRules.add(client.in.readUTF());
+            }
+            logger.info("Подключено к агенту " + address + ", удаленный каталог: " + message);
+            return client;
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    Address getAddress() {
+        return address;
+    }
+
+    String getRemoteRoot() {
+        return remoteRoot;
+    }
+
+    List<String> getRemoteRules() {
+        return remoteRules;
+    }
+
+    synchronized Map<String, ScanEntry> list(List<String> rules, Path displayRoot) throws IOException {
+        out.writeByte(SyncAgent.LIST);
+        SyncAgent.writeVarInt(out, rules.size());
+        for (String rule : rules) {
+            out.writeUTF(rule);
+        }
+        out.flush();
+        Map<String, ScanEntry> files = new HashMap<>();
+        byte[] name = new byte[256];
+        int length = 0;
+        while (true) {
+            int common = SyncAgent.readVarInt(in);
+            int suffix = SyncAgent.readVarInt(in);
+            if (common == 0 && suffix == 0) {
+                break;
+            }
+            if (common > length) {
+                throw new IOException("Поврежденный манифест агента " + address);
+            }
+            if (common + suffix > name.length) {
+                name = Arrays.copyOf(name, Math.max(name.length * 2, common + suffix));
+            }
+            in.readFully(name, common, suffix);
+            length = common + suffix;
+            String relativePath = new String(name, 0, length, StandardCharsets.UTF_8);
+            long size = SyncAgent.readVarLong(in);
+            long lastModifiedNanos = SyncAgent.readVarLong(in);
+            files.put(relativePath, new ScanEntry(displayRoot.resolve(relativePath), size, lastModifiedNanos, null));
+        }
+        metrics.filesScanned.add(files.size());
+        return files;
+    }
+
+    synchronized String hash(String relativePath) throws IOException {
+        out.writeByte(SyncAgent.HASH);
+        out.writeUTF(relativePath);
+        out.flush();
+        if (in.readByte() != SyncAgent.STATUS_OK) {
+            throw new IOException("Агент не смог вычислить контрольную сумму " + relativePath + ": " + in.readUTF());
+        }
+        return in.readUTF();
+    }
+
+    synchronized CopyScheduler.Result pull(List<CopyScheduler.CopyTask> tasks, CopyScheduler.CopyListener listener) throws IOException {
+        IOException[] sendError = new IOException[1];
+        Thread sender = new Thread(() -> {
+            try {
+                for (CopyScheduler.CopyTask task : tasks) {
+                    out.writeByte(SyncAgent.GET);
+                    out.writeUTF(task.relativePath);
+                }
+                out.flush();
+            } catch (IOException e) {
+                sendError[0] = e;
+            }
+        }, "agent-client-sender");
+        sender.start();
+
+        int successCount = 0;
+        int errorCount = 0;
+        try {
+            for (CopyScheduler.CopyTask task : tasks) {
+                long startNanos = metrics.start();
+                String error = receiveFile(task);
+                if (error == null) {
+                    successCount++;
+                    metrics.stop(SyncMetrics.STAGE_COPY_FILE, startNanos);
+                    metrics.filesCopied.increment();
+                    logger.log(Level.INFO, AsyncLogHandler.COPY_OK,
+                            new Object[]{String.valueOf(task.displayIndex), task.relativePath, task.reason});
+                } else {
+                    errorCount++;
+                    metrics.recordError(SyncMetrics.STAGE_COPY_FILE, "remote");
+                    logger.warning("[СБОЙ] Ошибка получения (#" + task.displayIndex + "): " + task.relativePath + ": " + error);
+                }
+                if (listener != null) {
+                    listener.onCompleted(task, error == null);
+                }
+            }
+        } finally {
+            joinSender(sender);
+        }
+        if (sendError[0] != null) {
+            throw sendError[0];
+        }
+        return new CopyScheduler.Result(successCount, errorCount);
+    }
+
+    private String receiveFile(CopyScheduler.CopyTask task) throws IOException {
+        if (in.readByte() != SyncAgent.STATUS_OK) {
+            return in.readUTF();
+        }
+        long mtimeNanos = in.readLong();
+        Path tempFile = FileCopier.tempFileFor(task.target);
+        OutputStream fileOut = null;
+        String error = null;
+        try {
+            Files.createDirectories(task.target.getParent());
+            fileOut = new BufferedOutputStream(Files.newOutputStream(tempFile), SyncAgent.STREAM_BUFFER);
+        } catch (IOException | SecurityException e) {
+            error = e.getMessage();
+        }
+        long received = SyncAgent.readChunks(in, fileOut);
+        boolean remoteOk = in.readByte() == SyncAgent.STATUS_OK;
+        String remoteError = remoteOk ? null : in.readUTF();
+        try {
+            if (fileOut != null) {
+                fileOut.close();
+            }
+            if (error == null && remoteError != null) {
+                error = remoteError;
+            } else if (error == null && received < 0) {
+                error = "файл получен не полностью";
+            }
+            if (error == null) {
+                Files.getFileAttributeView(tempFile, BasicFileAttributeView.class)
+                        .setTimes(FileTime.from(mtimeNanos, TimeUnit.NANOSECONDS), null, null);
+                try {
+                    Files.move(tempFile, task.target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, task.target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                metrics.bytesCopied.add(received);
+            }
+        } catch (IOException e) {
+            error = e.getMessage();
+        }
+        if (error != null) {
+            Files.deleteIfExists(tempFile);
+        }
+        return error;
+    }
+
+    synchronized CopyScheduler.Result push(List<CopyScheduler.CopyTask> tasks, CopyScheduler.CopyListener listener) throws IOException {
+        AtomicLongArray sentBytes = new AtomicLongArray(tasks.size());
+        AtomicReferenceArray<String> localErrors = new AtomicReferenceArray<>(tasks.size());
+        IOException[] sendError = new IOException[1];
+        Thread sender = new Thread(() -> {
+            try {
+                for (int i = 0; i < tasks.size(); i++) {
+                    CopyScheduler.CopyTask task = tasks.get(i);
+                    if (!task.operation.equals(CopyScheduler.CopyTask.COPY)) {
+                        sendRequest(task);
+                        continue;
+                    }
+                    InputStream fileIn = null;
+                    long mtimeNanos = 0;
+                    try {
+                        mtimeNanos = Files.getLastModifiedTime(task.source).to(TimeUnit.NANOSECONDS);
+                        fileIn = Files.newInputStream(task.source);
+                    } catch (IOException | SecurityException e) {
+                        localErrors.set(i, "Нет доступа к файлу: " + e.getMessage());
+                    }
+                    out.writeByte(SyncAgent.PUT);
+                    out.writeUTF(task.relativePath);
+                    out.writeLong(mtimeNanos);
+                    if (fileIn == null) {
+                        out.writeInt(-1);
+                        continue;
+                    }
+                    try (InputStream source = fileIn) {
+                        sentBytes.set(i, SyncAgent.writeChunks(source, out));
+                    } catch (SyncAgent.ChunkSourceException e) {
+                        localErrors.set(i, e.getMessage());
+                    }
+                }
+                out.flush();
+            } catch (IOException e) {
+                sendError[0] = e;
+                try {
+                    socket.shutdownOutput();
+                } catch (IOException ignored) {
+                }
+            }
+        }, "agent-client-sender");
+        sender.start();
+
+        int successCount = 0;
+        int errorCount = 0;
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                CopyScheduler.CopyTask task = tasks.get(i);
+                String error = in.readByte() == SyncAgent.STATUS_OK ? null : in.readUTF();
+                if (error != null && localErrors.get(i) != null) {
+                    error = localErrors.get(i);
+                }
+                if (error == null) {
+                    successCount++;
+                    logSuccess(task);
+                    if (task.operation.equals(CopyScheduler.CopyTask.COPY)) {
+                        metrics.filesCopied.increment();
+                        metrics.bytesCopied.add(sentBytes.get(i));
+                    }
+                } else {
+                    errorCount++;
+                    metrics.recordError(SyncMetrics.STAGE_COPY_FILE, "remote");
+                    logger.warning("[СБОЙ] Ошибка на агенте (#" + task.displayIndex + ", " + task.operation + "): "
+                            + task.relativePath + ": " + error);
+                }
+                if (listener != null) {
+                    listener.onCompleted(task, error == null);
+                }
+            }
+        } finally {
+            joinSender(sender);
+        }
+        if (sendError[0] != null) {
+            throw sendError[0];
+        }
+        return new CopyScheduler.Result(successCount, errorCount);
+    }
+
+    private void sendRequest(CopyScheduler.CopyTask task) throws IOException {
+        if (task.operation.equals(CopyScheduler.CopyTask.MOVE)) {
+            out.writeByte(SyncAgent.MOVE);
+            out.writeUTF(relativeToRoot(task.source));
+            out.writeUTF(task.relativePath);
+        } else {
+            out.writeByte(SyncAgent.DELETE);
+            out.writeUTF(task.relativePath);
+        }
+    }
+
+    private String relativeToRoot(Path displayPath) {
+        return address.displayRoot().relativize(displayPath).toString().replace(File.separatorChar, '/');
+    }
+
+    private void logSuccess(CopyScheduler.CopyTask task) {
+        if (task.operation.equals(CopyScheduler.CopyTask.COPY)) {
+            logger.log(Level.INFO, AsyncLogHandler.COPY_OK,
+                    new Object[]{String.valueOf(task.displayIndex), task.relativePath, task.reason});
+        } else if (task.operation.equals(CopyScheduler.CopyTask.MOVE)) {
+            logger.info("[ПЕРЕМЕЩЕН] (#" + task.displayIndex + "): " + relativeToRoot(task.source) + " -> " + task.relativePath);
+        } else {
+            logger.info("[УДАЛЕН] (#" + task.displayIndex + "): " + task.relativePath + " (Причина: " + task.reason + ")");
+        }
+    }
+
+    private static void joinSender(Thread sender) {
+        try {
+            sender.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            out.writeByte(SyncAgent.QUIT);
+            out.flush();
+        } catch (IOException ignored) {
+        } finally {
+            socket.close();
+        }
+    }
+}
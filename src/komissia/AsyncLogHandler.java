@@ -0,0 +1,215 @@
+package komissia;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+public class AsyncLogHandler extends Handler {
+
+    static final String COPY_OK = "[OK] Скопирован (#{0}): {1} (Причина: {2})";
+    static final String COPY_FAILED = "[СБОЙ] Ошибка копирования (#{0}): {1}";
+
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final int MAX_BATCH = 1024;
+    private static final DateTimeFormatter TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private final Writer out;
+    private final boolean console;
+    private final LogRecord[] ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+    private final Thread worker;
+    private final Thread shutdownHook;
+    private int head;
+    private int count;
+    private long published;
+    private long written;
+    private boolean closed;
+
+    public AsyncLogHandler(Writer out, boolean console) {
+        this(out, console, DEFAULT_CAPACITY);
+    }
+
+    public AsyncLogHandler(Writer out, boolean console, int capacity) {
+        this.out = out;
+        this.console = console;
+        this.ring = new LogRecord[Math.max(16, capacity)];
+        setFormatter(new SimpleFormatter());
+        worker = new Thread(this::drainLoop, console ? "log-console" : "log-file");
+        worker.setDaemon(true);
+        worker.start();
+        shutdownHook = new Thread(this::close, worker.getName() + "-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    boolean isConsole() {
+        return console;
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        if (!isCopyRecord(record)) {
+            record.getSourceClassName();
+        }
+        lock.lock();
+        try {
+            if (closed) {
+                writeDirect(record);
+                return;
+            }
+            while (count == ring.length) {
+                notFull.awaitUninterruptibly();
+            }
+            ring[(head + count) % ring.length] = record;
+            count++;
+            published++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drainLoop() {
+        LogRecord[] batch = new LogRecord[MAX_BATCH];
+        StringBuilder text = new StringBuilder(64 * MAX_BATCH);
+        while (true) {
+            int size;
+            lock.lock();
+            try {
+                while (count == 0 && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (count == 0) {
+                    return;
+                }
+                size = Math.min(count, MAX_BATCH);
+                for (int i = 0; i < size; i++) {
+                    batch[i] = ring[head];
+                    ring[head] = null;
+                    head = (head + 1) % ring.length;
+                }
+                count -= size;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            text.setLength(0);
+            for (int i = 0; i < size; i++) {
+                format(batch[i], text);
+                batch[i] = null;
+            }
+            try {
+                out.write(text.toString());
+                out.flush();
+            } catch (IOException e) {
+                reportError("Ошибка записи лога", e, ErrorManager.WRITE_FAILURE);
+            }
+
+            lock.lock();
+            try {
+                written += size;
+                drained.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static boolean isCopyRecord(LogRecord record) {
+        String message = record.getMessage();
+        Object[] params = record.getParameters();
+        return (COPY_OK.equals(message) || COPY_FAILED.equals(message)) && params != null && params.length >= 2;
+    }
+
+    private void format(LogRecord record, StringBuilder text) {
+        if (isCopyRecord(record)) {
+            Object[] params = record.getParameters();
+            TIMESTAMP.formatTo(record.getInstant(), text);
+            text.append(COPY_OK.equals(record.getMessage()) ? "\tOK\t#" : "\tFAIL\t#").append(params[0]).append('\t').append(params[1]);
+            if (params.length >= 3) {
+                text.append('\t').append(params[2]);
+            }
+            text.append(System.lineSeparator());
+            return;
+        }
+        Formatter formatter = getFormatter();
+        try {
+            text.append(formatter.format(record));
+        } catch (RuntimeException e) {
+            reportError("Ошибка форматирования лога", e, ErrorManager.FORMAT_FAILURE);
+        }
+    }
+
+    private void writeDirect(LogRecord record) {
+        StringBuilder text = new StringBuilder(128);
+        format(record, text);
+        try {
+            out.write(text.toString());
+            out.flush();
+        } catch (IOException e) {
+            reportError("Ошибка записи лога", e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    @Override
+    public void flush() {
+        lock.lock();
+        try {
+            long target = published;
+            while (written < target && worker.isAlive()) {
+                drained.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (console) {
+                out.flush();
+            } else {
+                out.close();
+            }
+        } catch (IOException e) {
+            reportError("Ошибка закрытия лога", e, ErrorManager.CLOSE_FAILURE);
+        }
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ignored) {
+            }
+        }
+    }
+}
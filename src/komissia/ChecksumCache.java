@@ -0,0 +1,121 @@
+package komissia;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+public class ChecksumCache {
+
+    private static final int FORMAT_VERSION = 1;
+
+    static class CachedChecksum {
+        final long size;
+        final long lastModifiedNanos;
+        final String fileKey;
+        final String hash;
+
+        CachedChecksum(long size, long lastModifiedNanos, String fileKey, String hash) {
+            this.size = size;
+            this.lastModifiedNanos = lastModifiedNanos;
+            this.fileKey = fileKey;
+            this.hash = hash;
+        }
+
+        boolean matches(ScanEntry entry) {
+            return size == entry.size
+                    && lastModifiedNanos == entry.lastModifiedNanos
+                    && Objects.equals(fileKey, fileKeyString(entry));
+        }
+    }
+
+    private final Path cacheFile;
+    private final Logger logger;
+    private final Map<String, CachedChecksum> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty = false;
+
+    public ChecksumCache(Path cacheFile, Logger logger) {
+        this.cacheFile = cacheFile;
+        this.logger = logger;
+    }
+
+    static String fileKeyString(ScanEntry entry) {
+        return entry.fileKey != null ? entry.fileKey.toString() : "";
+    }
+
+    static String cacheKey(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    public String lookup(ScanEntry entry) {
+        CachedChecksum cached = entries.get(cacheKey(entry.path));
+        return cached != null && cached.matches(entry) ? cached.hash : null;
+    }
+
+    public void put(ScanEntry entry, String hash) {
+        entries.put(cacheKey(entry.path), new CachedChecksum(entry.size, entry.lastModifiedNanos, fileKeyString(entry), hash));
+        dirty = true;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void load() {
+        if (!Files.isRegularFile(cacheFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile), 1 << 16))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                logger.warning("Неподдерживаемая версия кэша контрольных сумм: " + cacheFile + ", кэш будет пересоздан.");
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                String fileKey = in.readUTF();
+                String hash = in.readUTF();
+                entries.put(path, new CachedChecksum(size, modified, fileKey, hash));
+            }
+            logger.info("Загружен кэш контрольных сумм: " + cacheFile + " (" + count + " записей)");
+        } catch (IOException e) {
+            entries.clear();
+            logger.warning("Не удалось прочитать кэш контрольных сумм " + cacheFile + ": " + e.getMessage());
+        }
+    }
+
+    public void save() {
+        if (!dirty) {
+            return;
+        }
+        Path tempFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+        try {
+            Path parent = cacheFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16))) {
+                Map<String, CachedChecksum> snapshot = Map.copyOf(entries);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, CachedChecksum> e : snapshot.entrySet()) {
+                    CachedChecksum c = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeLong(c.size);
+                    out.writeLong(c.lastModifiedNanos);
+                    out.writeUTF(c.fileKey);
+                    out.writeUTF(c.hash);
+                }
+            }
+            Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            logger.info("Кэш контрольных сумм сохранен: " + cacheFile + " (" + entries.size() + " записей)");
+        } catch (IOException e) {
+            logger.warning("Не удалось сохранить кэш контрольных сумм " + cacheFile + ": " + e.getMessage());
+        }
+    }
+}
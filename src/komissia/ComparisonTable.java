@@ -0,0 +1,161 @@
+package komissia;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+
+public class ComparisonTable {
+
+    static final byte IN_A = 1;
+    static final byte IN_B = 2;
+
+    private final List<String> dirs;
+    private final int[] dirIndex;
+    private final byte[] namePool;
+    private final int[] nameOffset;
+    private final byte[] statusCodes;
+    private final byte[] presence;
+
+    private ComparisonTable(List<String> dirs, int[] dirIndex, byte[] namePool, int[] nameOffset,
+                            byte[] statusCodes, byte[] presence) {
+        this.dirs = dirs;
+        this.dirIndex = dirIndex;
+        this.namePool = namePool;
+        this.nameOffset = nameOffset;
+        this.statusCodes = statusCodes;
+        this.presence = presence;
+    }
+
+    static ComparisonTable empty() {
+        return new Builder().build();
+    }
+
+    int size() {
+        return statusCodes.length;
+    }
+
+    boolean isEmpty() {
+        return statusCodes.length == 0;
+    }
+
+    int displayIndex(int row) {
+        return row + 1;
+    }
+
+    FileStatus status(int row) {
+        return FileStatus.ofCode(statusCodes[row]);
+    }
+
+    boolean inA(int row) {
+        return (presence[row] & IN_A) != 0;
+    }
+
+    boolean inB(int row) {
+        return (presence[row] & IN_B) != 0;
+    }
+
+    String directory(int row) {
+        return dirs.get(dirIndex[row]);
+    }
+
+    int directoryId(int row) {
+        return dirIndex[row];
+    }
+
+    int directoryCount() {
+        return dirs.size();
+    }
+
+    String directoryName(int dirId) {
+        return dirs.get(dirId);
+    }
+
+    String fileName(int row) {
+        return new String(namePool, nameOffset[row], nameOffset[row + 1] - nameOffset[row], StandardCharsets.UTF_8);
+    }
+
+    String relativePath(int row) {
+        String dir = directory(row);
+        return dir.isEmpty() ? fileName(row) : dir + "/" + fileName(row);
+    }
+
+    DirectorySyncAppSimple.ComparisonInfo info(int row, Path rootA, Path rootB) {
+        String relativePath = relativePath(row);
+        DirectorySyncAppSimple.ComparisonInfo info = new DirectorySyncAppSimple.ComparisonInfo(relativePath, status(row),
+                inA(row) ? rootA.resolve(relativePath) : null, inB(row) ? rootB.resolve(relativePath) : null);
+        info.displayIndex = displayIndex(row);
+        return info;
+    }
+
+    long estimatedBytes() {
+        long bytes = 16L + namePool.length + 4L * nameOffset.length + 4L * dirIndex.length
+                + statusCodes.length + presence.length;
+        for (String dir : dirs) {
+            bytes += 40 + 2L * dir.length();
+        }
+        return bytes;
+    }
+
+    static class Builder {
+        private String[] paths = new String[1024];
+        private byte[] statusCodes = new byte[1024];
+        private byte[] presence = new byte[1024];
+        private int count = 0;
+
+        Builder add(String relativePath, FileStatus status, boolean inA, boolean inB) {
+            if (count == paths.length) {
+                int capacity = paths.length * 2;
+                paths = Arrays.copyOf(paths, capacity);
+                statusCodes = Arrays.copyOf(statusCodes, capacity);
+                presence = Arrays.copyOf(presence, capacity);
+            }
+            paths[count] = relativePath;
+            statusCodes[count] = status.code();
+            presence[count] = (byte) ((inA ? IN_A : 0) | (inB ? IN_B : 0));
+            count++;
+            return this;
+        }
+
+        ComparisonTable build() {
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (x, y) -> paths[x].compareTo(paths[y]));
+
+            List<String> dirs = new ArrayList<>();
+            Map<String, Integer> dirIds = new HashMap<>();
+            int[] dirIndex = new int[count];
+            int[] nameOffset = new int[count + 1];
+            byte[] sortedStatus = new byte[count];
+            byte[] sortedPresence = new byte[count];
+            byte[][] names = new byte[count][];
+            int poolSize = 0;
+            for (int row = 0; row < count; row++) {
+                int source = order[row];
+                String path = paths[source];
+                int slash = path.lastIndexOf('/');
+                String dir = slash < 0 ? "" : path.substring(0, slash);
+                Integer dirId = dirIds.get(dir);
+                if (dirId == null) {
+                    dirId = dirs.size();
+                    dirs.add(dir);
+                    dirIds.put(dir, dirId);
+                }
+                dirIndex[row] = dirId;
+                names[row] = path.substring(slash + 1).getBytes(StandardCharsets.UTF_8);
+                nameOffset[row] = poolSize;
+                poolSize += names[row].length;
+                sortedStatus[row] = statusCodes[source];
+                sortedPresence[row] = presence[source];
+            }
+            nameOffset[count] = poolSize;
+            byte[] namePool = new byte[poolSize];
+            for (int row = 0; row < count; row++) {
+                System.arraycopy(names[row], 0, namePool, nameOffset[row], names[row].length);
+            }
+            paths = null;
+            return new ComparisonTable(dirs, dirIndex, namePool, nameOffset, sortedStatus, sortedPresence);
+        }
+    }
+}
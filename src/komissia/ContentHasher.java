@@ -0,0 +1,115 @@
+package komissia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+public class ContentHasher {
+
+    static final String ALGORITHM = "SHA-256";
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(CHUNK_SIZE));
+
+    private final ChecksumCache cache;
+    private final int parallelism;
+    private final Logger logger;
+    private final SyncMetrics metrics;
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong hashedFiles = new AtomicLong();
+    private final AtomicLong hashedBytes = new AtomicLong();
+
+    public ContentHasher(ChecksumCache cache, int parallelism, Logger logger) {
+        this(cache, parallelism, logger, new SyncMetrics());
+    }
+
+    public ContentHasher(ChecksumCache cache, int parallelism, Logger logger, SyncMetrics metrics) {
+        this.cache = cache;
+        this.parallelism = Math.max(1, parallelism);
+        this.logger = logger;
+        this.metrics = metrics;
+    }
+
+    static String hashFile(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        ByteBuffer buffer = BUFFERS.get();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public String hash(ScanEntry entry) throws IOException {
+        String cached = cache != null ? cache.lookup(entry) : null;
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            return cached;
+        }
+        long startNanos = metrics.start();
+        String hash;
+        try {
+            hash = hashFile(entry.path);
+        } catch (IOException e) {
+            metrics.recordError(SyncMetrics.STAGE_HASH_FILE, e);
+            throw e;
+        }
+        metrics.stop(SyncMetrics.STAGE_HASH_FILE, startNanos);
+        metrics.filesHashed.increment();
+        metrics.bytesHashed.add(entry.size);
+        hashedFiles.incrementAndGet();
+        hashedBytes.addAndGet(entry.size);
+        if (cache != null) {
+            cache.put(entry, hash);
+        }
+        return hash;
+    }
+
+    public Map<Path, String> hashAll(Collection<ScanEntry> entries) {
+        Map<Path, String> result = new ConcurrentHashMap<>();
+        if (entries.isEmpty()) {
+            return result;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, entries.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (ScanEntry entry : entries) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        result.put(entry.path, hash(entry));
+                    } catch (IOException e) {
+                        logger.warning("Не удалось вычислить контрольную сумму: " + entry.path + " Ошибка: " + e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warning("Ошибка при вычислении контрольных сумм: " + e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info("Контрольные суммы: из кэша " + cacheHits.get() + ", вычислено " + hashedFiles.get()
+                + " файлов (" + hashedBytes.get() + " байт)");
+        return result;
+    }
+}
@@ -0,0 +1,268 @@
+package komissia;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class CopyScheduler {
+
+    interface CopyListener {
+        void onCompleted(CopyTask task, boolean success);
+    }
+
+    interface FanOutCopier {
+        boolean[] copy(Path source, List<Path> targets);
+    }
+
+    static class CopyTask {
+        static final String COPY = "COPY";
+        static final String MOVE = "MOVE";
+        static final String DELETE = "DELETE";
+        static final String LINK = "LINK";
+
+        final String operation;
+        final String relativePath;
+        final Path source;
+        final Path target;
+        final String reason;
+        final int displayIndex;
+        final long size;
+
+        CopyTask(String relativePath, Path source, Path target, String reason, int displayIndex, long size) {
+            this(COPY, relativePath, source, target, reason, displayIndex, size);
+        }
+
+        CopyTask(String operation, String relativePath, Path source, Path target, String reason, int displayIndex, long size) {
+            this.operation = operation;
+            this.relativePath = relativePath;
+            this.source = source;
+            this.target = target;
+            this.reason = reason;
+            this.displayIndex = displayIndex;
+            this.size = size;
+        }
+    }
+
+    static class Result {
+        final int successCount;
+        final int errorCount;
+
+        Result(int successCount, int errorCount) {
+            this.successCount = successCount;
+            this.errorCount = errorCount;
+        }
+    }
+
+    private final int parallelism;
+    private final Logger logger;
+    private final BiPredicate<Path, Path> copier;
+
+    public CopyScheduler(int parallelism, Logger logger, BiPredicate<Path, Path> copier) {
+        this.parallelism = Math.max(1, parallelism);
+        this.logger = logger;
+        this.copier = copier;
+    }
+
+    public Result execute(List<CopyTask> tasks) {
+        return execute(tasks, null);
+    }
+
+    public Result execute(List<CopyTask> tasks, CopyListener listener) {
+        AtomicInteger successCount = new AtomicInteger();
+        AtomicInteger errorCount = new AtomicInteger();
+        if (tasks.isEmpty()) {
+            return new Result(0, 0);
+        }
+
+        Set<Path> failedDirs = createTargetDirectories(tasks);
+
+        List<CopyTask> ordered = new ArrayList<>(tasks);
+        ordered.sort(Comparator.comparingLong((CopyTask t) -> t.size).reversed());
+
+        List<Runnable> jobs = new ArrayList<>(ordered.size());
+        for (CopyTask task : ordered) {
+            jobs.add(() -> {
+                Path targetDir = task.target.getParent();
+                runTask(task, targetDir == null || !failedDirs.contains(targetDir), listener, successCount, errorCount);
+            });
+        }
+        runJobs(jobs, errorCount);
+        return new Result(successCount.get(), errorCount.get());
+    }
+
+    public Result executeFanOut(List<CopyTask> tasks, FanOutCopier fanOutCopier, CopyListener listener) {
+        AtomicInteger successCount = new AtomicInteger();
+        AtomicInteger errorCount = new AtomicInteger();
+        if (tasks.isEmpty()) {
+            return new Result(0, 0);
+        }
+
+        Set<Path> failedDirs = createTargetDirectories(tasks);
+
+        Map<Path, List<CopyTask>> bySource = new LinkedHashMap<>();
+        for (CopyTask task : tasks) {
+            bySource.computeIfAbsent(task.source, k -> new ArrayList<>()).add(task);
+        }
+        List<List<CopyTask>> groups = new ArrayList<>(bySource.values());
+        groups.sort(Comparator.comparingLong((List<CopyTask> g) -> g.get(0).size).reversed());
+
+        List<Runnable> jobs = new ArrayList<>(groups.size());
+        for (List<CopyTask> group : groups) {
+            jobs.add(() -> {
+                List<CopyTask> ready = new ArrayList<>(group.size());
+                List<Path> targets = new ArrayList<>(group.size());
+                for (CopyTask task : group) {
+                    Path targetDir = task.target.getParent();
+                    if (targetDir == null || !failedDirs.contains(targetDir)) {
+                        ready.add(task);
+                        targets.add(task.target);
+                    } else {
+                        report(task, false, listener, successCount, errorCount);
+                    }
+                }
+                if (ready.isEmpty()) {
+                    return;
+                }
+                boolean[] results = fanOutCopier.copy(group.get(0).source, targets);
+                for (int i = 0; i < ready.size(); i++) {
+                    report(ready.get(i), results[i], listener, successCount, errorCount);
+                }
+            });
+        }
+        runJobs(jobs, errorCount);
+        return new Result(successCount.get(), errorCount.get());
+    }
+
+    private void runJobs(List<Runnable> jobs, AtomicInteger errorCount) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, jobs.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>(jobs.size());
+            for (Runnable job : jobs) {
+                futures.add(executor.submit(job));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    errorCount.incrementAndGet();
+                    logger.severe("Непредвиденная ошибка копирования: " + e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.severe("Синхронизация прервана.");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void runTask(CopyTask task, boolean targetDirReady, CopyListener listener,
+                         AtomicInteger successCount, AtomicInteger errorCount) {
+        report(task, targetDirReady && copier.test(task.source, task.target), listener, successCount, errorCount);
+    }
+
+    private void report(CopyTask task, boolean success, CopyListener listener,
+                        AtomicInteger successCount, AtomicInteger errorCount) {
+        if (success) {
+            successCount.incrementAndGet();
+            logger.log(Level.INFO, AsyncLogHandler.COPY_OK,
+                    new Object[]{String.valueOf(task.displayIndex), task.relativePath, task.reason});
+        } else {
+            errorCount.incrementAndGet();
+            logger.log(Level.WARNING, AsyncLogHandler.COPY_FAILED,
+                    new Object[]{String.valueOf(task.displayIndex), task.relativePath});
+        }
+        if (listener != null) {
+            listener.onCompleted(task, success);
+        }
+    }
+
+    public Session openSession(int maxInFlight, CopyListener listener) {
+        return new Session(maxInFlight, listener);
+    }
+
+    class Session implements AutoCloseable {
+        private final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        private final Semaphore inFlight;
+        private final CopyListener listener;
+        private final Map<Path, Boolean> preparedDirs = new ConcurrentHashMap<>();
+        private final AtomicInteger successCount = new AtomicInteger();
+        private final AtomicInteger errorCount = new AtomicInteger();
+
+        private Session(int maxInFlight, CopyListener listener) {
+            this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+            this.listener = listener;
+        }
+
+        void submit(CopyTask task) throws InterruptedException {
+            inFlight.acquire();
+            try {
+                executor.execute(() -> {
+                    try {
+                        Path targetDir = task.target.getParent();
+                        boolean dirReady = targetDir == null || preparedDirs.computeIfAbsent(targetDir, this::prepareDirectory);
+                        runTask(task, dirReady, listener, successCount, errorCount);
+                    } catch (RuntimeException e) {
+                        errorCount.incrementAndGet();
+                        logger.severe("Непредвиденная ошибка копирования: " + e);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.release();
+                throw e;
+            }
+        }
+
+        private boolean prepareDirectory(Path dir) {
+            try {
+                Files.createDirectories(dir);
+                return true;
+            } catch (IOException | SecurityException e) {
+                logger.severe("Не удалось создать каталог " + dir + ": " + e.getMessage());
+                return false;
+            }
+        }
+
+        Result finish() throws InterruptedException {
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("Ожидание завершения копирования...");
+            }
+            return new Result(successCount.get(), errorCount.get());
+        }
+
+        @Override
+        public void close() {
+            executor.shutdownNow();
+        }
+    }
+
+    private Set<Path> createTargetDirectories(List<CopyTask> tasks) {
+        SortedSet<Path> dirs = new TreeSet<>();
+        for (CopyTask task : tasks) {
+            Path targetDir = task.target.getParent();
+            if (targetDir != null) {
+                dirs.add(targetDir);
+            }
+        }
+        Set<Path> failedDirs = new HashSet<>();
+        for (Path dir : dirs) {
+            try {
+                Files.createDirectories(dir);
+            } catch (IOException | SecurityException e) {
+                failedDirs.add(dir);
+                logger.severe("Не удалось создать каталог " + dir + ": " + e.getMessage());
+            }
+        }
+        logger.info("Подготовлено каталогов назначения: " + (dirs.size() - failedDirs.size()) + " из " + dirs.size());
+        return failedDirs;
+    }
+}
@@ -0,0 +1,73 @@
+package komissia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class DeltaCopier {
+
+    static final int BLOCK_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer[]> BUFFERS = ThreadLocal.withInitial(() ->
+            new ByteBuffer[]{ByteBuffer.allocateDirect(BLOCK_SIZE), ByteBuffer.allocateDirect(BLOCK_SIZE)});
+
+    static class Stats {
+        final long totalBytes;
+        final long writtenBytes;
+        final long changedBlocks;
+
+        Stats(long totalBytes, long writtenBytes, long changedBlocks) {
+            this.totalBytes = totalBytes;
+            this.writtenBytes = writtenBytes;
+            this.changedBlocks = changedBlocks;
+        }
+    }
+
+    private DeltaCopier() {
+    }
+
+    static Stats update(Path source, Path target) throws IOException {
+        ByteBuffer[] buffers = BUFFERS.get();
+        ByteBuffer sourceBlock = buffers[0];
+        ByteBuffer targetBlock = buffers[1];
+        long written = 0;
+        long changedBlocks = 0;
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long sourceSize = in.size();
+            long targetSize = out.size();
+            for (long position = 0; position < sourceSize; position += BLOCK_SIZE) {
+                readBlock(in, sourceBlock, position, BLOCK_SIZE);
+                if (position < targetSize) {
+                    readBlock(out, targetBlock, position, sourceBlock.remaining());
+                    if (sourceBlock.equals(targetBlock)) {
+                        continue;
+                    }
+                }
+                long writePosition = position;
+                FileCopier.throttle().acquireBytes(sourceBlock.remaining());
+                while (sourceBlock.hasRemaining()) {
+                    writePosition += out.write(sourceBlock, writePosition);
+                }
+                written += writePosition - position;
+                changedBlocks++;
+            }
+            if (targetSize > sourceSize) {
+                out.truncate(sourceSize);
+            }
+            return new Stats(sourceSize, written, changedBlocks);
+        }
+    }
+
+    private static void readBlock(FileChannel channel, ByteBuffer buffer, long position, int length) throws IOException {
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+    }
+}
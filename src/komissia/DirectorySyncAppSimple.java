@@ -0,0 +1,2834 @@
+package komissia;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.*;
+
+public class DirectorySyncAppSimple {
+
+    interface ComparisonSink {
+        void accept(ComparisonInfo info, ScanEntry entryA, ScanEntry entryB) throws IOException, InterruptedException;
+    }
+
+    static class ComparisonInfo {
+        String relativePath;
+        FileStatus status;
+        Path pathInA;
+        Path pathInB;
+        int displayIndex = 0;
+
+        ComparisonInfo(String relativePath, FileStatus status, Path pathInA, Path pathInB) {
+            this.relativePath = relativePath;
+            this.status = status;
+            this.pathInA = pathInA;
+            this.pathInB = pathInB;
+        }
+
+        String getRelativePath() {
+            return relativePath;
+        }
+    }
+
+    private static final long WATCH_SNAPSHOT_SAVE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private Path pathA = Path.of("C:\\Users\\liona\\Desktop\\Комиссия\\komissia\\src\\pathA");
+    private Path pathB = Path.of("C:\\Users\\liona\\Desktop\\Комиссия\\komissia\\src\\pathB");
+    private Path pathC = Path.of("C:\\Users\\liona\\Desktop\\Комиссия\\komissia\\src\\pathC");
+    private String logFilePath = "LOGS.log";
+    private int scanThreads = Runtime.getRuntime().availableProcessors();
+    private int copyThreads = 4;
+    private boolean verifyContent = false;
+    private Path checksumCachePath = Paths.get("checksums.cache");
+    private boolean incrementalScan = false;
+    private Path snapshotDir = Paths.get("snapshots");
+    private boolean deltaCopy = false;
+    private long deltaMinSize = 64L << 20;
+    private String watchDirection = null;
+    private String batchMode = null;
+    private String batchDirection = "A_TO_B";
+    private boolean dryRun = false;
+    private boolean forceOverwriteFlag = false;
+    private String outputFormat = "jsonl";
+    private Path outputPath = null;
+    private boolean streamingCompare = false;
+    private boolean threeWayMerge = false;
+    private boolean journalEnabled = true;
+    private boolean propagateDeletes = false;
+    private boolean detectMoves = false;
+    private boolean dedupMerge = false;
+    private final List<Path> fanOutTargets = new ArrayList<>();
+    private long maxBytesPerSecond = 0;
+    private long maxFilesPerSecond = 0;
+    private final List<IoThrottle.Profile> throttleProfiles = new ArrayList<>();
+    private boolean adaptiveThrottle = false;
+    private IoThrottle ioThrottle = IoThrottle.UNLIMITED;
+    private boolean packCompress = false;
+    private long packSegmentSize = 256L << 20;
+    private final List<String> packPaths = new ArrayList<>();
+    private final List<Path> ignoreFiles = new ArrayList<>();
+    private final List<String> filterRules = new ArrayList<>();
+    private PathFilter pathFilter;
+    private Path savePlanPath = null;
+    private Path applyPlanPath = null;
+    private TransferEstimator transferEstimator;
+    private int positionalPathCount = 0;
+    private List<String> pathFilterRules = List.of();
+    private AgentClient.Address remoteB = null;
+    private AgentClient agentClient = null;
+    private String agentListen = null;
+    private String agentToken = null;
+    private boolean scanFailed = false;
+    private List<Path> pathFilterRoots = List.of();
+    private long watchDebounceMillis = 500;
+    private int treePageSize = 0;
+    private int treeCollapseThreshold = 0;
+    private boolean showProgress = false;
+    private Path metricsFile = null;
+    private boolean metricsJson = false;
+    private long metricsIntervalSeconds = 10;
+    private final SyncMetrics metrics = new SyncMetrics();
+    private Logger logger;
+    private Scanner consoleScanner;
+
+    private Map<String, ScanEntry> lastScanMapA = new HashMap<>();
+    private Map<String, ScanEntry> lastScanMapB = new HashMap<>();
+    private List<ScanSnapshot> previousSnapshots = List.of();
+    private List<ScanSnapshot> scannedSnapshots = List.of();
+    private boolean watching = false;
+    private boolean watchedSnapshotsDirty = false;
+    private long watchedSnapshotsSavedNanos;
+    private ComparisonTable lastComparisonResult = ComparisonTable.empty();
+    private int lastNumberedItemCount = 0;
+    private long lastSavedStatCalls = 0;
+
+
+    public static void main(String[] args) {
+        DirectorySyncAppSimple app = new DirectorySyncAppSimple();
+        app.consoleScanner = new Scanner(System.in);
+        app.parseArguments(args);
+
+        try {
+            app.setupLogger();
+        } catch (IOException e) {
+            System.err.println("КРИТИЧЕСКАЯ ОШИБКА: Не удалось создать файл лога! " + e.getMessage());
+            app.consoleScanner.close();
+            return;
+        }
+        app.configureThrottle();
+
+        int exitCode = 0;
+        MetricsReporter reporter = app.startMetricsReporter();
+        try {
+            if ("agent".equals(app.batchMode)) {
+                exitCode = app.runAgentMode();
+            } else if (app.remoteB != null && app.batchMode == null) {
+                System.err.println("Ошибка: удаленная Папка B (" + app.remoteB + ") поддерживается только в пакетном режиме --mode=analyze|sync.");
+                exitCode = 2;
+            } else if (app.batchMode != null) {
+                exitCode = app.runBatchMode();
+            } else if (app.watchDirection != null) {
+                app.runWatchMode();
+            } else {
+                app.runMainMenu();
+            }
+        } finally {
+            if (reporter != null) {
+                reporter.close();
+            }
+        }
+
+        app.closeLogger();
+        app.consoleScanner.close();
+        if (app.batchMode != null) {
+            System.exit(exitCode);
+        }
+        System.out.println("Приложение завершило работу.");
+    }
+
+    void parseArguments(String[] args) {
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+            }
+        }
+        positionalPathCount = positional.size();
+        if (positional.size() >= 1) {
+            pathA = Paths.get(positional.get(0));
+        }
+        if (positional.size() >= 2) {
+            if (positional.get(1).startsWith(AgentClient.SCHEME)) {
+                try {
+                    remoteB = AgentClient.Address.parse(positional.get(1));
+                    pathB = remoteB.displayRoot();
+                } catch (NumberFormatException e) {
+                    System.err.println("Неверный адрес агента: " + positional.get(1));
+                }
+            } else {
+                pathB = Paths.get(positional.get(1));
+            }
+        }
+        if (positional.size() >= 3) {
+            pathC = Paths.get(positional.get(2));
+        }
+        for (String target : positional.subList(Math.min(1, positional.size()), positional.size())) {
+            if (!target.startsWith(AgentClient.SCHEME)) {
+                fanOutTargets.add(Paths.get(target));
+            }
+        }
+        for (String arg : args) {
+            if (arg.startsWith("--mode=")) {
+                batchMode = arg.substring("--mode=".length()).toLowerCase(Locale.ROOT);
+            } else if (arg.startsWith("--direction=")) {
+                batchDirection = arg.substring("--direction=".length()).toUpperCase(Locale.ROOT);
+            } else if (arg.equals("--propagate-deletes")) {
+                propagateDeletes = true;
+            } else if (arg.startsWith("--max-bytes-per-sec=")) {
+                try {
+                    maxBytesPerSecond = IoThrottle.parseRate(arg.substring("--max-bytes-per-sec=".length()));
+                } catch (NumberFormatException e) {
+                    System.err.println("Неверное значение --max-bytes-per-sec, ограничение не задано");
+                }
+            } else if (arg.startsWith("--max-files-per-sec=")) {
+                try {
+                    maxFilesPerSecond = IoThrottle.parseRate(arg.substring("--max-files-per-sec=".length()));
+                } catch (NumberFormatException e) {
+                    System.err.println("Неверное значение --max-files-per-sec, ограничение не задано");
+                }
+            } else if (arg.startsWith("--throttle-profile=")) {
+                try {
+                    throttleProfiles.add(IoThrottle.Profile.parse(arg.substring("--throttle-profile=".length())));
+                } catch (RuntimeException e) {
+                    System.err.println("Неверное значение --throttle-profile, профиль пропущен: " + e.getMessage());
+                }
+            } else if (arg.equals("--adaptive-throttle")) {
+                adaptiveThrottle = true;
+            } else if (arg.equals("--pack-compress")) {
+                packCompress = true;
+            } else if (arg.startsWith("--segment-mb=")) {
+                try {
+                    packSegmentSize = Math.max(1, Long.parseLong(arg.substring("--segment-mb=".length()))) << 20;
+                } catch (NumberFormatException e) {
+                    System.err.println("Неверное значение --segment-mb, используется " + (packSegmentSize >> 20));
+                }
+            } else if (arg.startsWith("--pack-path=")) {
+                packPaths.add(arg.substring("--pack-path=".length()).replace('\\', '/'));
+            } else if (arg.equals("--dedup")) {
+                dedupMerge = true;
+            } else if (arg.equals("--detect-moves")) {
+                detectMoves = true;
+            } else if (arg.startsWith("--exclude=")) {
+                filterRules.add(arg.substring("--exclude=".length()));
+            } else if (arg.startsWith("--include=")) {
+                filterRules.add("!" + arg.substring("--include=".length()));
+            } else if (arg.startsWith("--ignore-file=")) {
+                ignoreFiles.add(Paths.get(arg.substring("--ignore-file=".length())));
+            } else if (arg.startsWith("--listen=")) {
+                agentListen = arg.substring("--listen=".length());
+            } else if (arg.startsWith("--agent-token=")) {
+                agentToken = arg.substring("--agent-token=".length());
+            } else if (arg.startsWith("--save-plan=")) {
+                savePlanPath = Paths.get(arg.substring("--save-plan=".length()));
+            } else if (arg.startsWith("--apply-plan=")) {
+                applyPlanPath = Paths.get(arg.substring("--apply-plan=".length()));
+            } else if (arg.equals("--no-journal")) {
+                journalEnabled = false;
+            } else if (arg.equals("--three-way")) {
+                threeWayMerge = true;
+            } else if (arg.equals("--streaming")) {
+                streamingCompare = true;
+            } else if (arg.equals("--dry-run")) {
+                dryRun = true;
+            } else if (arg.equals("--force")) {
+                forceOverwriteFlag = true;
+            } else if (arg.startsWith("--format=")) {
+                outputFormat = arg.substring("--format=".length());
+            } else if (arg.startsWith("--output=")) {
+                outputPath = Paths.get(arg.substring("--output=".length()));
+            } else if (arg.startsWith("--log=")) {
+                logFilePath = arg.substring("--log=".length());
+            } else if (arg.startsWith("--page-size=")) {
+                try {
+                    treePageSize = Math.max(0, Integer.parseInt(arg.substring("--page-size=".length())));
+                } catch (NumberFormatException e) {
+                    System.err.println("Неверное значение --page-size, используется " + treePageSize);
+                }
+            } else if (arg.startsWith("--collapse=")) {
+                try {
+                    treeCollapseThreshold = Math.max(0, Integer.parseInt(arg.substring("--collapse=".length())));
+                } catch (NumberFormatException e) {
+                    System.err.println("Неверное значение --collapse, используется " + treeCollapseThreshold);
+                }
+            } else if (arg.equals("--progress")) {
+                showProgress = true;
+            } else if (arg.startsWith("--metrics=")) {
+                metricsFile = Paths.get(arg.substring("--metrics=".length()));
+            } else if (arg.startsWith("--metrics-format=")) {
+                metricsJson = arg.substring("--metrics-format=".length()).equalsIgnoreCase("json");
+            } else if (arg.startsWith("--metrics-interval=")) {
+                try {
+                    metricsIntervalSeconds = Math.max(1, Long.parseLong(arg.substring("--metrics-interval=".length())));
+                } catch (NumberFormatException e) {
+                    System.err.println("Неверное значение --metrics-interval, используется " + metricsIntervalSeconds);
+                }
+            } else if (arg.equals("--verify-content")) {
+                verifyContent = true;
+            } else if (arg.equals("--delta")) {
+                deltaCopy = true;
+            } else if (arg.startsWith("--delta-min-mb=")) {
+                try {
+                    deltaMinSize = Math.max(0, Long.parseLong(arg.substring("--delta-min-mb=".length()))) << 20;
+                } catch (NumberFormatException e) {
+                    System.err.println("Неверное значение --delta-min-mb, используется " + (deltaMinSize >> 20));
+                }
+            } else if (arg.equals("--watch")) {
+                watchDirection = "BOTH";
+            } else if (arg.startsWith("--watch=")) {
+                watchDirection = arg.substring("--watch=".length()).toUpperCase(Locale.ROOT);
+            } else if (arg.startsWith("--debounce-ms=")) {
+                try {
+                    watchDebounceMillis = Math.max(0, Long.parseLong(arg.substring("--debounce-ms=".length())));
+                } catch (NumberFormatException e) {
+                    System.err.println("Неверное значение --debounce-ms, используется " + watchDebounceMillis);
+                }
+            } else if (arg.equals("--incremental")) {
+                incrementalScan = true;
+            } else if (arg.startsWith("--snapshot-dir=")) {
+                snapshotDir = Paths.get(arg.substring("--snapshot-dir=".length()));
+            } else if (arg.startsWith("--checksum-cache=")) {
+                checksumCachePath = Paths.get(arg.substring("--checksum-cache=".length()));
+            } else if (arg.startsWith("--copy-threads=")) {
+                try {
+                    copyThreads = Math.max(1, Integer.parseInt(arg.substring("--copy-threads=".length())));
+                } catch (NumberFormatException e) {
+                    System.err.println("Неверное значение --copy-threads, используется " + copyThreads);
+                }
+            } else if (arg.startsWith("--threads=")) {
+                try {
+                    scanThreads = Math.max(1, Integer.parseInt(arg.substring("--threads=".length())));
+                } catch (NumberFormatException e) {
+                    System.err.println("Неверное значение --threads, используется " + scanThreads);
+                }
+            }
+        }
+    }
+
+    void configureThrottle() {
+        ioThrottle = new IoThrottle(new IoThrottle.Profile(0, 0, maxBytesPerSecond, maxFilesPerSecond),
+                throttleProfiles, adaptiveThrottle, logger);
+        FileCopier.setThrottle(ioThrottle);
+        if (ioThrottle.isLimited()) {
+            logger.info("Ограничение ввода-вывода: " + ioThrottle);
+        } else if (adaptiveThrottle) {
+            logger.warning("--adaptive-throttle действует только вместе с --max-bytes-per-sec, --max-files-per-sec или --throttle-profile");
+        }
+    }
+
+    MetricsReporter startMetricsReporter() {
+        if (!showProgress && metricsFile == null) {
+            return null;
+        }
+        if (metricsFile != null) {
+            logger.info("Метрики записываются в " + metricsFile.toAbsolutePath() + " каждые " + metricsIntervalSeconds + " с");
+        }
+        return new MetricsReporter(metrics, logger, showProgress, metricsFile, metricsJson, metricsIntervalSeconds);
+    }
+
+    void setupLogger() throws IOException {
+        logger = Logger.getLogger("SimpleSync");
+        for (Handler handler : logger.getHandlers()) {
+            logger.removeHandler(handler);
+            handler.close();
+        }
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.ALL);
+
+        try {
+            Path logPath = Paths.get(logFilePath);
+            if (logPath.getParent() != null) {
+                Files.createDirectories(logPath.getParent());
+            }
+            Writer fileWriter = Files.newBufferedWriter(logPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            AsyncLogHandler fileHandler = new AsyncLogHandler(fileWriter, false);
+            fileHandler.setLevel(Level.INFO);
+            logger.addHandler(fileHandler);
+        } catch (IOException e) {
+            System.err.println("Внимание: Не удалось настроить запись лога в файл: " + e.getMessage());
+            throw e;
+        }
+
+        AsyncLogHandler consoleHandler = new AsyncLogHandler(new OutputStreamWriter(System.err, Charset.defaultCharset()), true);
+        consoleHandler.setLevel(Level.INFO);
+        logger.addHandler(consoleHandler);
+
+        logger.info("Логгер запущен. Файл лога: " + Paths.get(logFilePath).toAbsolutePath());
+    }
+
+    void closeLogger() {
+        if (logger != null) {
+            for (Handler handler : logger.getHandlers()) {
+                handler.close();
+            }
+        }
+    }
+
+    void runMainMenu() {
+        ensurePathsSelected(pathA);
+        ensurePathsSelected(pathB);
+        offerJournalResume();
+
+        int choice;
+        do {
+            displayMainMenu();
+            System.out.print("Выберите действие: ");
+            try {
+                choice = Integer.parseInt(consoleScanner.nextLine());
+            } catch (NumberFormatException e) {
+                choice = -1;
+            }
+
+            switch (choice) {
+                case 1:
+                    analyzeAndDisplay(true, false);
+                    break;
+                case 2:
+                    analyzeAndDisplay(false, true);
+                    break;
+                case 3:
+                    analyzeAndDisplay(true, true);
+                    break;
+                case 4:
+                    runSyncMenu();
+                    break;
+                case 5:
+                    runChangePathsMenu();
+                    break;
+                case 6:
+                    logger.info("Выход из программы.");
+                    break;
+                default:
+                    System.out.println("Неверный выбор. Пожалуйста, введите число от 1 до 6.");
+                    logger.warning("Введен неверный пункт меню.");
+            }
+            if (choice != 6) {
+                System.out.println("\nНажмите Enter для возврата в меню...");
+                consoleScanner.nextLine();
+            }
+        } while (choice != 6);
+    }
+
+    void ensurePathsSelected(Path path) {
+        while (path == null || !Files.isDirectory(path)) {
+            System.out.print("Введите ПОЛНЫЙ путь к Папке: ");
+            String input = consoleScanner.nextLine().trim();
+            if (!input.isEmpty()) {
+                path = Paths.get(input);
+                if (!Files.isDirectory(path)) {
+                    System.out.println("Ошибка: Указанный путь не является действительным каталогом.");
+                    path = null;
+                }
+            }
+        }
+    }
+
+    void displayMainMenu() {
+        System.out.println("\n===== ГЛАВНОЕ МЕНЮ =====");
+        System.out.println("Выбрано:");
+        System.out.println("  Папка А: " + (pathA != null ? pathA.toAbsolutePath() : "НЕ ЗАДАНО"));
+        System.out.println("  Папка B: " + (pathB != null ? pathB.toAbsolutePath() : "НЕ ЗАДАНО"));
+        System.out.println("  Папка C (для слияния): " + (pathC != null ? pathC.toAbsolutePath() : "НЕ ЗАДАНО"));
+        System.out.println("  Файл лога: " + Paths.get(logFilePath).toAbsolutePath());
+        System.out.println("  Сравнение: " + (verifyContent ? "по содержимому (кэш: " + checksumCachePath.toAbsolutePath() + ")" : "по размеру и дате изменения"));
+        System.out.println("Действия:");
+        System.out.println("  1. Анализ измененных/новых файлов");
+        System.out.println("  2. Анализ идентичных файлов");
+        System.out.println("  3. Полный анализ");
+        System.out.println("  4. Синхронизация");
+        System.out.println("  5. Сменить каталоги / путь к лог-файлу");
+        System.out.println("  6. Выход");
+        System.out.println("==========================");
+    }
+
+    void analyzeAndDisplay(boolean showModifiedNew, boolean showIdentical) {
+        if (pathA == null || pathB == null) {
+            System.out.println("Ошибка: Сначала выберите Папку А и Папку B.");
+            return;
+        }
+        logger.info("Запуск анализа...");
+        scanBothDirectories();
+        compareLists();
+        assignDisplayIndexes();
+
+        System.out.println("\n===== РЕЗУЛЬТАТЫ АНАЛИЗА =====");
+        if (displayTree("Содержимое Папки А (" + pathA.toAbsolutePath() + ")", true, showModifiedNew, showIdentical)) {
+            displayTree("Содержимое Папки B (" + pathB.toAbsolutePath() + ")", false, showModifiedNew, showIdentical);
+        }
+
+        System.out.println("===============================");
+        logger.info("Отображение результатов анализа завершено.");
+    }
+
+    void scanBothDirectories() {
+        if (agentClient != null) {
+            scanWithAgent();
+            return;
+        }
+        logger.info("Параллельное сканирование каталогов: " + pathA + " и " + pathB + " (потоков: " + scanThreads + ")");
+        List<Path> roots = List.of(pathA, pathB);
+        long startNanos = metrics.start();
+        PathFilter filter = pathFilter();
+        try (ParallelDirectoryScanner scanner = new ParallelDirectoryScanner(scanThreads, logger, metrics, filter, ioThrottle)) {
+            List<Map<String, ScanEntry>> maps;
+            previousSnapshots = tracksDeletions() ? loadSnapshots(roots, ScanSnapshot.SYNCED_SUFFIX) : List.of();
+            if (incrementalScan) {
+                String suffix = "-" + filter.fingerprint() + ScanSnapshot.SCAN_SUFFIX;
+                maps = scanner.scanAll(roots, loadSnapshots(roots, suffix));
+                saveSnapshots(roots, scanner.getLastSnapshots(), suffix);
+                logger.info("Инкрементальное сканирование: каталогов из снимка " + scanner.getReusedDirs()
+                        + ", перечитано " + scanner.getRescannedDirs());
+            } else {
+                maps = scanner.scanAll(roots);
+            }
+            scannedSnapshots = scanner.getLastSnapshots();
+            lastScanMapA = maps.get(0);
+            lastScanMapB = maps.get(1);
+        }
+        metrics.stop(SyncMetrics.STAGE_SCAN, startNanos);
+        logger.info("Найдено " + lastScanMapA.size() + " файлов в " + pathA);
+        logger.info("Найдено " + lastScanMapB.size() + " файлов в " + pathB);
+    }
+
+    void scanWithAgent() {
+        logger.info("Сканирование каталога " + pathA + " (потоков: " + scanThreads + ") и получение манифеста от агента " + remoteB);
+        long startNanos = metrics.start();
+        PathFilter filter = pathFilter();
+        CompletableFuture<Map<String, ScanEntry>> remoteScan = CompletableFuture.supplyAsync(() -> {
+            try {
+                return agentClient.list(pathFilterRules, pathB);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        List<Path> roots = List.of(pathA, pathB);
+        previousSnapshots = tracksDeletions() ? loadSnapshots(roots, ScanSnapshot.SYNCED_SUFFIX) : List.of();
+        try (ParallelDirectoryScanner scanner = new ParallelDirectoryScanner(scanThreads, logger, metrics, filter, ioThrottle)) {
+            if (incrementalScan) {
+                String suffix = "-" + filter.fingerprint() + ScanSnapshot.SCAN_SUFFIX;
+                lastScanMapA = scanner.scanAll(List.of(pathA), loadSnapshots(List.of(pathA), suffix)).get(0);
+                saveSnapshots(List.of(pathA), scanner.getLastSnapshots(), suffix);
+            } else {
+                lastScanMapA = scanner.scan(pathA);
+            }
+            scannedSnapshots = Arrays.asList(scanner.getLastSnapshots().get(0), null);
+        }
+        try {
+            lastScanMapB = remoteScan.join();
+        } catch (CompletionException e) {
+            logger.severe("Не удалось получить манифест от агента " + remoteB + ": " + e.getCause().getMessage());
+            lastScanMapB = new HashMap<>();
+            scanFailed = true;
+        }
+        metrics.stop(SyncMetrics.STAGE_SCAN, startNanos);
+        logger.info("Найдено " + lastScanMapA.size() + " файлов в " + pathA);
+        logger.info("Найдено " + lastScanMapB.size() + " файлов в " + remoteB + " (" + agentClient.getRemoteRoot() + ")");
+    }
+
+    PathFilter pathFilter() {
+        List<Path> roots = Arrays.asList(pathA, pathB);
+        if (pathFilter == null || !roots.equals(pathFilterRoots)) {
+            try {
+                List<String> extraRules = new ArrayList<>(filterRules);
+                if (agentClient != null) {
+                    extraRules.addAll(agentClient.getRemoteRules());
+                }
+                pathFilterRules = PathFilter.collectRules(roots, ignoreFiles, extraRules);
+                pathFilter = PathFilter.compile(pathFilterRules);
+            } catch (IOException | IllegalArgumentException e) {
+                logger.warning("Не удалось загрузить правила фильтра, исключаются только временные файлы: " + e.getMessage());
+                pathFilter = PathFilter.NONE;
+                pathFilterRules = PathFilter.BUILT_IN_RULES;
+            }
+            pathFilterRoots = roots;
+            logger.info("Фильтр путей: " + pathFilter);
+        }
+        return pathFilter;
+    }
+
+    boolean tracksDeletions() {
+        return propagateDeletes || detectMoves;
+    }
+
+    List<ScanSnapshot> loadSnapshots(List<Path> roots, String suffix) {
+        List<ScanSnapshot> snapshots = new ArrayList<>();
+        for (Path root : roots) {
+            Path snapshotFile = ScanSnapshot.fileFor(snapshotDir, root, suffix);
+            ScanSnapshot snapshot = null;
+            if (Files.isRegularFile(snapshotFile)) {
+                try {
+                    snapshot = ScanSnapshot.load(snapshotFile);
+                    logger.info("Загружен снимок каталога " + root + ": " + snapshotFile);
+                } catch (IOException e) {
+                    logger.warning("Не удалось загрузить снимок " + snapshotFile + ": " + e.getMessage());
+                }
+            }
+            snapshots.add(snapshot);
+        }
+        return snapshots;
+    }
+
+    void saveSnapshots(List<Path> roots, List<ScanSnapshot> snapshots, String suffix) {
+        for (int i = 0; i < roots.size(); i++) {
+            if (snapshots.get(i) == null) {
+                continue;
+            }
+            Path snapshotFile = ScanSnapshot.fileFor(snapshotDir, roots.get(i), suffix);
+            try {
+                snapshots.get(i).save(snapshotFile);
+            } catch (IOException e) {
+                logger.warning("Не удалось сохранить снимок " + snapshotFile + ": " + e.getMessage());
+            }
+        }
+    }
+
+    Map<String, ScanEntry> scanDirectory(Path rootDir) {
+        Map<String, ScanEntry> filesMap;
+        logger.info("Сканирование каталога: " + rootDir);
+        try (ParallelDirectoryScanner scanner = new ParallelDirectoryScanner(scanThreads, logger, metrics, pathFilter(), ioThrottle)) {
+            filesMap = scanner.scan(rootDir);
+        }
+        logger.info("Найдено " + filesMap.size() + " файлов в " + rootDir);
+        return filesMap;
+    }
+
+
+    void compareLists() {
+        lastComparisonResult = ComparisonTable.empty();
+        lastSavedStatCalls = 0;
+        long startNanos = metrics.start();
+        Set<String> allRelativePaths = new HashSet<>();
+        allRelativePaths.addAll(lastScanMapA.keySet());
+        allRelativePaths.addAll(lastScanMapB.keySet());
+
+        lastComparisonResult = classifyPaths(allRelativePaths);
+        metrics.stop(SyncMetrics.STAGE_COMPARE, startNanos);
+
+        logger.info("Сравнение завершено. Всего уникальных относительных путей: " + lastComparisonResult.size());
+        logger.info("Сравнение выполнено по атрибутам из сканирования, сэкономлено системных вызовов: " + lastSavedStatCalls);
+    }
+
+    ComparisonTable classifyPaths(Collection<String> relativePaths) {
+        Map<Path, String> contentHashes = verifyContent ? hashCommonCandidates(relativePaths) : Map.of();
+        ComparisonTable.Builder result = new ComparisonTable.Builder();
+        for (String relativePath : relativePaths) {
+            ScanEntry entryA = lastScanMapA.get(relativePath);
+            ScanEntry entryB = lastScanMapB.get(relativePath);
+            if (entryA == null && entryB == null) {
+                continue;
+            }
+            FileStatus status = classify(entryA, entryB, contentHashes);
+            if (tracksDeletions() && previousSnapshots.size() == 2) {
+                if (status == FileStatus.NEW_IN_B && previousSnapshots.get(0) != null
+                        && previousSnapshots.get(0).contains(relativePath)) {
+                    status = FileStatus.DELETED_IN_A;
+                } else if (status == FileStatus.NEW_IN_A && previousSnapshots.get(1) != null
+                        && previousSnapshots.get(1).contains(relativePath)) {
+                    status = FileStatus.DELETED_IN_B;
+                }
+            }
+            result.add(relativePath, status, entryA != null, entryB != null);
+        }
+        return result.build();
+    }
+
+    FileStatus classify(ScanEntry entryA, ScanEntry entryB, Map<Path, String> contentHashes) {
+        FileStatus status = FileStatus.ERROR;
+        if (entryA != null && entryB != null) {
+            lastSavedStatCalls += 4;
+            if (verifyContent && entryA.size == entryB.size) {
+                status = compareByContent(entryA, entryB, contentHashes);
+            } else if (entryA.size == entryB.size && entryA.lastModifiedNanos == entryB.lastModifiedNanos) {
+                status = FileStatus.IDENTICAL;
+            } else {
+                if (entryA.lastModifiedNanos > entryB.lastModifiedNanos) {
+                    status = FileStatus.MODIFIED_A_NEWER;
+                } else if (entryB.lastModifiedNanos > entryA.lastModifiedNanos) {
+                    status = FileStatus.MODIFIED_B_NEWER;
+                }
+            }
+        } else if (entryA != null) {
+            status = FileStatus.NEW_IN_A;
+        } else if (entryB != null) {
+            status = FileStatus.NEW_IN_B;
+        }
+        return status;
+    }
+
+    Map<Path, String> hashCommonCandidates(Collection<String> relativePaths) {
+        List<ScanEntry> toHash = new ArrayList<>();
+        for (String relativePath : relativePaths) {
+            ScanEntry entryA = lastScanMapA.get(relativePath);
+            ScanEntry entryB = lastScanMapB.get(relativePath);
+            if (entryA != null && entryB != null && entryA.size == entryB.size) {
+                toHash.add(entryA);
+                toHash.add(entryB);
+            }
+        }
+        if (toHash.isEmpty()) {
+            return Map.of();
+        }
+        logger.info("Проверка содержимого: " + toHash.size() + " файлов для хеширования");
+        return hashWithChecksumCache(toHash);
+    }
+
+    ChecksumCache openChecksumCache() {
+        ChecksumCache cache = new ChecksumCache(checksumCachePath, logger);
+        cache.load();
+        return cache;
+    }
+
+    Map<Path, String> hashWithChecksumCache(Collection<ScanEntry> entries) {
+        ChecksumCache cache = openChecksumCache();
+        Map<Path, String> hashes = new ContentHasher(cache, scanThreads, logger, metrics).hashAll(entries);
+        cache.save();
+        return hashes;
+    }
+
+    FileStatus compareByContent(ScanEntry entryA, ScanEntry entryB, Map<Path, String> contentHashes) {
+        String hashA = contentHashes.get(entryA.path);
+        String hashB = contentHashes.get(entryB.path);
+        if (hashA == null || hashB == null) {
+            return FileStatus.READ_ERROR;
+        }
+        if (hashA.equals(hashB)) {
+            return FileStatus.IDENTICAL;
+        }
+        if (entryA.lastModifiedNanos > entryB.lastModifiedNanos) {
+            return FileStatus.MODIFIED_A_NEWER;
+        } else if (entryB.lastModifiedNanos > entryA.lastModifiedNanos) {
+            return FileStatus.MODIFIED_B_NEWER;
+        }
+        return FileStatus.MODIFIED_CONTENT;
+    }
+
+    void assignDisplayIndexes() {
+        lastNumberedItemCount = lastComparisonResult.size();
+
+        logger.info("Присвоены номера для выбора " + lastNumberedItemCount + " элементам.");
+    }
+
+
+    boolean displayTree(String title, boolean isForA, boolean showModNew, boolean showIdentical) {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()), 1 << 16);
+        TreeRenderer renderer = new TreeRenderer(lastComparisonResult, out, treePageSize, treeCollapseThreshold, this::promptNextPage);
+        try {
+            return renderer.render(title, isForA, showModNew, showIdentical);
+        } catch (IOException e) {
+            logger.warning("Ошибка вывода дерева: " + e.getMessage());
+            return false;
+        }
+    }
+
+    boolean promptNextPage() {
+        System.out.print("-- Далее: Enter, q - прекратить вывод -- ");
+        if (consoleScanner == null || !consoleScanner.hasNextLine()) {
+            return false;
+        }
+        return !consoleScanner.nextLine().trim().equalsIgnoreCase("q");
+    }
+
+
+    void runSyncMenu() {
+        analyzeAndDisplay(true, true);
+
+        System.out.println("\n===== МЕНЮ СИНХРОНИЗАЦИИ =====");
+        System.out.println("1. Синхронизировать A -> B (Копировать новое/измененное из A в B)");
+        System.out.println("2. Синхронизировать B -> A (Копировать новое/измененное из B в A)");
+        System.out.println("3. Слияние A + B -> C (Копировать уникальное/новейшее в C)");
+        System.out.println("4. Выборочная синхронизация A -> B");
+        System.out.println("5. Выборочная синхронизация B -> A");
+        System.out.println("6. Выборочное слияние A + B -> C");
+        System.out.println("7. Назад");
+        System.out.println("==============================");
+        System.out.print("Выберите действие: ");
+
+        int choice;
+        try {
+            choice = Integer.parseInt(consoleScanner.nextLine());
+        } catch (NumberFormatException e) {
+            choice = -1;
+        }
+
+        String targetType = null;
+        boolean isSelective = false;
+        boolean forceOverwrite = false;
+
+        switch (choice) {
+            case 1: targetType = "A_TO_B"; break;
+            case 2: targetType = "B_TO_A"; break;
+            case 3: targetType = "MERGE_TO_C"; break;
+            case 4: targetType = "A_TO_B"; isSelective = true; break;
+            case 5: targetType = "B_TO_A"; isSelective = true; break;
+            case 6: targetType = "MERGE_TO_C"; isSelective = true; break;
+            case 7: return;
+            default: System.out.println("Неверный выбор."); return;
+        }
+
+        if (targetType.equals("MERGE_TO_C")) {
+            if (pathC == null) {
+                System.out.print("Введите ПОЛНЫЙ путь к Папке C для слияния: ");
+                String input = consoleScanner.nextLine().trim();
+                if (!input.isEmpty()) {
+                    pathC = Paths.get(input);
+                    if (!Files.isDirectory(pathC)) {
+                        try {
+                            Files.createDirectories(pathC);
+                            logger.info("Создан каталог для Папки С: " + pathC);
+                        } catch (IOException e) {
+                            System.out.println("Ошибка создания каталога C: " + e.getMessage());
+                            logger.severe("Не удалось создать каталог C: " + pathC);
+                            pathC = null;
+                            return;
+                        }
+                    }
+                } else {
+                    System.out.println("Слияние отменено. Требуется путь к Папке C.");
+                    return;
+                }
+            }
+            if (pathC.equals(pathA) || pathC.equals(pathB)) {
+                System.out.println("Ошибка: Папка C не может совпадать с Папкой А или B.");
+                pathC = null;
+                return;
+            }
+        }
+
+        if (threeWayMerge && isSelective && targetType.equals("MERGE_TO_C")) {
+            System.out.println("Выборочное слияние недоступно в трехстороннем режиме (--three-way).");
+            return;
+        }
+
+        Set<Integer> selectedIndices = new HashSet<>();
+        if (isSelective) {
+            System.out.print("Введите номера файлов для синхронизации (например: 1, 3-5, 8), макс. #" + lastNumberedItemCount + ": ");
+            String input = consoleScanner.nextLine();
+            selectedIndices = parseSelection(input, lastNumberedItemCount);
+            if (selectedIndices.isEmpty()) {
+                System.out.println("Не выбрано ни одного действительного файла. Синхронизация отменена.");
+                return;
+            }
+            System.out.println("Выбранные элементы (по номерам): " + selectedIndices);
+        }
+        if (threeWayMerge && targetType.equals("MERGE_TO_C")) {
+            synchronizeFiles(targetType, selectedIndices, forceOverwrite);
+            return;
+        }
+        reviewAndSynchronize(targetType, selectedIndices, forceOverwrite);
+    }
+
+    void reviewAndSynchronize(String targetType, Set<Integer> selectedIndices, boolean forceOverwrite) {
+        SyncPlan plan = planCopies(lastComparisonResult, targetType, selectedIndices, forceOverwrite);
+        System.out.println("\n--- План синхронизации ---");
+        for (String line : describePlan(plan)) {
+            System.out.println(line);
+        }
+        System.out.println("--------------------------");
+        if (plan.isEmpty()) {
+            System.out.println("Нет файлов для синхронизации.");
+            return;
+        }
+        while (true) {
+            System.out.print("Выполнить план? (y - выполнить, s - сохранить в файл, n - отмена): ");
+            String answer = consoleScanner.nextLine().trim().toLowerCase(Locale.ROOT);
+            if (answer.equals("y")) {
+                logger.info("Запуск синхронизации по плану: " + targetType +
+                        (selectedIndices.isEmpty() ? " (Все подходящие)" : " (Выбрано: " + selectedIndices.size() + ")") +
+                        (forceOverwrite ? " [ПРИНУДИТЕЛЬНО]" : ""));
+                runPlan(plan);
+                return;
+            } else if (answer.equals("s")) {
+                System.out.print("Введите путь к файлу плана: ");
+                String input = consoleScanner.nextLine().trim();
+                if (!input.isEmpty()) {
+                    savePlan(plan, Paths.get(input));
+                }
+            } else {
+                logger.info("Синхронизация " + targetType + " отменена пользователем после просмотра плана.");
+                return;
+            }
+        }
+    }
+
+    List<String> describePlan(SyncPlan plan) {
+        return plan.summary(10, estimator().estimateNanos(plan.totalBytes(), plan.tasks.size()));
+    }
+
+    boolean savePlan(SyncPlan plan, Path file) {
+        try {
+            plan.save(file);
+            System.out.println("План сохранен: " + file.toAbsolutePath());
+            logger.info("План синхронизации " + plan.targetType + " сохранен в " + file.toAbsolutePath());
+            return true;
+        } catch (IOException e) {
+            System.out.println("Ошибка сохранения плана: " + e.getMessage());
+            logger.severe("Не удалось сохранить план в " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    TransferEstimator estimator() {
+        if (transferEstimator == null) {
+            transferEstimator = new TransferEstimator(snapshotDir);
+            try {
+                transferEstimator.load();
+            } catch (IOException e) {
+                logger.warning("Не удалось прочитать историю скорости копирования: " + e.getMessage());
+            }
+        }
+        return transferEstimator;
+    }
+
+    Set<Integer> parseSelection(String input, int maxIndex) {
+        Set<Integer> selected = new HashSet<>();
+        if (input == null || input.trim().isEmpty()) return selected;
+
+        String[] parts = input.split(",");
+        for (String part : parts) {
+            part = part.trim();
+            try {
+                if (part.contains("-")) {
+                    String[] range = part.split("-", 2);
+                    int start = Integer.parseInt(range[0].trim());
+                    int end = Integer.parseInt(range[1].trim());
+                    if (start >= 1 && end <= maxIndex && start <= end) {
+                        for (int i = start; i <= end; i++) {
+                            selected.add(i);
+                        }
+                    } else {
+                        logger.warning("Неверный диапазон в выборе: " + part);
+                    }
+                } else {
+                    int index = Integer.parseInt(part);
+                    if (index >= 1 && index <= maxIndex) {
+                        selected.add(index);
+                    } else {
+                        logger.warning("Неверный индекс в выборе: " + part);
+                    }
+                }
+            } catch (NumberFormatException e) {
+                logger.warning("Неверный формат числа в выборе: " + part);
+            }
+        }
+        return selected;
+    }
+
+
+    void synchronizeFiles(String targetType, Set<Integer> selectedIndices, boolean forceOverwrite) {
+        if (threeWayMerge && targetType.equals("MERGE_TO_C") && selectedIndices.isEmpty()) {
+            printMergeSummary(runThreeWayMerge(null));
+            return;
+        }
+        synchronizeFiles(lastComparisonResult, targetType, selectedIndices, forceOverwrite);
+    }
+
+    void synchronizeFiles(ComparisonTable items, String targetType, Set<Integer> selectedIndices, boolean forceOverwrite) {
+        logger.info("Запуск синхронизации: " + targetType +
+                (selectedIndices.isEmpty() ? " (Все подходящие)" : " (Выбрано: " + selectedIndices.size() + ")") +
+                (forceOverwrite ? " [ПРИНУДИТЕЛЬНО]" : ""));
+
+        runPlan(planCopies(items, targetType, selectedIndices, forceOverwrite));
+    }
+
+    void runPlan(SyncPlan plan) {
+        CopyScheduler.Result result = executePlan(plan, null);
+        int successCount = result.successCount;
+        int errorCount = plan.errorCount + result.errorCount;
+
+        System.out.println("\n--- Отчет о синхронизации ---");
+        System.out.println("Успешно скопировано: " + successCount);
+        System.out.println("Ошибки: " + errorCount);
+        System.out.println("-----------------------------");
+        logger.info("Синхронизация завершена. Успешно: " + successCount + ", Ошибки: " + errorCount);
+    }
+
+    CopyScheduler.Result executePlan(SyncPlan plan, CopyScheduler.CopyListener listener) {
+        SyncJournal journal = journalEnabled && !plan.isEmpty() ? beginJournal(plan) : null;
+        CopyScheduler.CopyListener journaledListener = journal == null ? listener : (task, success) -> {
+            try {
+                journal.completed(task, success);
+            } catch (IOException e) {
+                logger.warning("Ошибка записи журнала синхронизации: " + e.getMessage());
+            }
+            if (listener != null) {
+                listener.onCompleted(task, success);
+            }
+        };
+        Set<Path> failedTargets = ConcurrentHashMap.newKeySet();
+        CopyScheduler.CopyListener trackingListener = plan.links.isEmpty() ? journaledListener : (task, success) -> {
+            if (!success) {
+                failedTargets.add(task.target);
+            }
+            if (journaledListener != null) {
+                journaledListener.onCompleted(task, success);
+            }
+        };
+        CopyScheduler.Result result = agentClient != null
+                ? executeWithAgent(plan, trackingListener)
+                : executeLocalPlan(plan, trackingListener);
+        if (!plan.links.isEmpty()) {
+            CopyScheduler.Result linked = materializeLinks(plan, failedTargets, journaledListener);
+            result = new CopyScheduler.Result(result.successCount + linked.successCount, result.errorCount + linked.errorCount);
+        }
+        if (journal != null) {
+            try {
+                journal.finish();
+            } catch (IOException e) {
+                logger.warning("Не удалось удалить журнал синхронизации: " + e.getMessage());
+            }
+        }
+        if (!watching && tracksDeletions() && scannedSnapshots.size() == 2) {
+            saveSyncedSnapshots(plan.targetType);
+        }
+        if (ioThrottle.isLimited()) {
+            logger.info(String.format(Locale.ROOT, "Ожидание ограничителя ввода-вывода (сумма по потокам): %.1f с, скорость %.0f%% от лимита",
+                    ioThrottle.getWaitedNanos() / 1e9, ioThrottle.getFactor() * 100));
+        }
+        return result;
+    }
+
+    CopyScheduler.Result executeWithAgent(SyncPlan plan, CopyScheduler.CopyListener listener) {
+        SyncPlan localPlan = new SyncPlan(plan.targetType);
+        List<CopyScheduler.CopyTask> pushTasks = new ArrayList<>();
+        List<CopyScheduler.CopyTask> pullTasks = new ArrayList<>();
+        for (List<CopyScheduler.CopyTask> tasks : List.of(plan.moves, plan.deletions)) {
+            for (CopyScheduler.CopyTask task : tasks) {
+                if (task.target.startsWith(pathB)) {
+                    pushTasks.add(task);
+                } else {
+                    (tasks == plan.moves ? localPlan.moves : localPlan.deletions).add(task);
+                }
+            }
+        }
+        for (CopyScheduler.CopyTask task : plan.tasks) {
+            if (task.target.startsWith(pathB)) {
+                pushTasks.add(task);
+            } else if (task.source.startsWith(pathB)) {
+                pullTasks.add(task);
+            } else {
+                localPlan.tasks.add(task);
+            }
+        }
+        logger.info("Операций на агенте " + remoteB + ": отправка " + pushTasks.size() + ", получение " + pullTasks.size());
+        int successCount = 0;
+        int errorCount = 0;
+        long startNanos = metrics.start();
+        long bytesBefore = metrics.bytesCopied.sum();
+        long copyStartNanos = System.nanoTime();
+        try {
+            if (!pushTasks.isEmpty()) {
+                CopyScheduler.Result pushed = agentClient.push(pushTasks, listener);
+                successCount += pushed.successCount;
+                errorCount += pushed.errorCount;
+            }
+            if (!pullTasks.isEmpty()) {
+                CopyScheduler.Result pulled = agentClient.pull(pullTasks, listener);
+                successCount += pulled.successCount;
+                errorCount += pulled.errorCount;
+            }
+        } catch (IOException e) {
+            logger.severe("Соединение с агентом " + remoteB + " прервано: " + e.getMessage());
+            errorCount = pushTasks.size() + pullTasks.size() - successCount;
+        }
+        metrics.stop(SyncMetrics.STAGE_SYNC, startNanos);
+        try {
+            estimator().record(metrics.bytesCopied.sum() - bytesBefore, successCount, System.nanoTime() - copyStartNanos);
+        } catch (IOException e) {
+            logger.warning("Не удалось сохранить историю скорости копирования: " + e.getMessage());
+        }
+        if (!localPlan.isEmpty()) {
+            CopyScheduler.Result local = executeLocalPlan(localPlan, listener);
+            successCount += local.successCount;
+            errorCount += local.errorCount;
+        }
+        return new CopyScheduler.Result(successCount, errorCount);
+    }
+
+    CopyScheduler.Result executeLocalPlan(SyncPlan plan, CopyScheduler.CopyListener listener) {
+        logger.info("Файлов к копированию: " + plan.tasks.size() + " (потоков копирования: " + copyThreads + ")");
+        long startNanos = metrics.start();
+        CopyScheduler.Result moved = applyMovesAndDeletions(plan, listener);
+        long bytesBefore = metrics.bytesCopied.sum();
+        long copyStartNanos = System.nanoTime();
+        CopyScheduler scheduler = new CopyScheduler(copyThreads, logger, this::transferFile);
+        CopyScheduler.Result result = plan.targetType.equals("FAN_OUT")
+                ? scheduler.executeFanOut(plan.tasks, this::fanOutFile, listener)
+                : scheduler.execute(plan.tasks, listener);
+        long copyNanos = System.nanoTime() - copyStartNanos;
+        metrics.stop(SyncMetrics.STAGE_SYNC, startNanos);
+        try {
+            estimator().record(metrics.bytesCopied.sum() - bytesBefore, result.successCount, copyNanos);
+        } catch (IOException e) {
+            logger.warning("Не удалось сохранить историю скорости копирования: " + e.getMessage());
+        }
+        return new CopyScheduler.Result(result.successCount + moved.successCount, result.errorCount + moved.errorCount);
+    }
+
+    void saveSyncedSnapshots(String targetType) {
+        List<ScanSnapshot> sources = new ArrayList<>(scannedSnapshots);
+        if (targetType.equals("A_TO_B")) {
+            sources.set(1, null);
+        } else if (targetType.equals("B_TO_A")) {
+            sources.set(0, null);
+        }
+        saveSnapshots(List.of(pathA, pathB), sources, ScanSnapshot.SYNCED_SUFFIX);
+    }
+
+    CopyScheduler.Result applyMovesAndDeletions(SyncPlan plan, CopyScheduler.CopyListener listener) {
+        if (plan.moves.isEmpty() && plan.deletions.isEmpty()) {
+            return new CopyScheduler.Result(0, 0);
+        }
+        boolean aToB = plan.targetType.equals("A_TO_B");
+        Path sourceRoot = aToB ? pathA : pathB;
+        Path targetRoot = aToB ? pathB : pathA;
+        int successCount = 0;
+        int errorCount = 0;
+        Set<Path> touchedDirs = new HashSet<>();
+        for (CopyScheduler.CopyTask task : plan.moves) {
+            boolean success;
+            try {
+                Files.createDirectories(task.target.getParent());
+                try {
+                    Files.move(task.source, task.target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(task.source, task.target);
+                }
+                touchedDirs.add(task.source.getParent());
+                logger.info("[ПЕРЕМЕЩЕН] (#" + task.displayIndex + "): " + targetRoot.relativize(task.source) + " -> " + task.relativePath);
+                success = true;
+            } catch (IOException | SecurityException e) {
+                metrics.recordError("move", e);
+                logger.warning("[СБОЙ] Ошибка перемещения (#" + task.displayIndex + "): " + task.source + " -> " + task.target + ": " + e.getMessage());
+                success = false;
+            }
+            if (success) {
+                successCount++;
+            } else {
+                errorCount++;
+            }
+            if (listener != null) {
+                listener.onCompleted(task, success);
+            }
+        }
+        for (CopyScheduler.CopyTask task : plan.deletions) {
+            boolean success;
+            try {
+                Files.deleteIfExists(task.target);
+                touchedDirs.add(task.target.getParent());
+                logger.info("[УДАЛЕН] (#" + task.displayIndex + "): " + task.relativePath + " (Причина: " + task.reason + ")");
+                success = true;
+            } catch (IOException | SecurityException e) {
+                metrics.recordError("delete", e);
+                logger.warning("[СБОЙ] Ошибка удаления (#" + task.displayIndex + "): " + task.target + ": " + e.getMessage());
+                success = false;
+            }
+            if (success) {
+                successCount++;
+            } else {
+                errorCount++;
+            }
+            if (listener != null) {
+                listener.onCompleted(task, success);
+            }
+        }
+        pruneEmptyDirectories(touchedDirs, sourceRoot, targetRoot);
+        logger.info("Перемещено: " + plan.moves.size() + ", удалено: " + plan.deletions.size() + ", ошибок: " + errorCount);
+        return new CopyScheduler.Result(successCount, errorCount);
+    }
+
+    void pruneEmptyDirectories(Set<Path> dirs, Path sourceRoot, Path targetRoot) {
+        List<Path> ordered = new ArrayList<>(dirs);
+        ordered.sort(Comparator.comparingInt(Path::getNameCount).reversed());
+        for (Path dir : ordered) {
+            while (dir != null && !dir.equals(targetRoot) && dir.startsWith(targetRoot)) {
+                if (Files.exists(sourceRoot.resolve(targetRoot.relativize(dir)))) {
+                    break;
+                }
+                try {
+                    Files.delete(dir);
+                    logger.info("Удален пустой каталог: " + dir);
+                } catch (IOException | SecurityException e) {
+                    break;
+                }
+                dir = dir.getParent();
+            }
+        }
+    }
+
+    SyncJournal beginJournal(SyncPlan plan) {
+        Path journalFile = SyncJournal.fileFor(snapshotDir, pathA, pathB, pathC);
+        try {
+            return SyncJournal.begin(journalFile, SyncJournal.rootKey(pathA, pathB, pathC), plan);
+        } catch (IOException e) {
+            logger.warning("Не удалось создать журнал синхронизации " + journalFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    SyncJournal.Pending loadPendingJournal() {
+        Path journalFile = SyncJournal.fileFor(snapshotDir, pathA, pathB, pathC);
+        try {
+            SyncJournal.Pending pending = SyncJournal.load(journalFile);
+            if (pending != null && !pending.rootKey.equals(SyncJournal.rootKey(pathA, pathB, pathC))) {
+                logger.warning("Журнал синхронизации относится к другим каталогам и будет отброшен: " + journalFile);
+                discardJournal();
+                return null;
+            }
+            return pending;
+        } catch (IOException e) {
+            logger.warning("Не удалось прочитать журнал синхронизации " + journalFile + ": " + e.getMessage());
+            discardJournal();
+            return null;
+        }
+    }
+
+    void discardJournal() {
+        try {
+            Files.deleteIfExists(SyncJournal.fileFor(snapshotDir, pathA, pathB, pathC));
+        } catch (IOException e) {
+            logger.warning("Не удалось удалить журнал синхронизации: " + e.getMessage());
+        }
+    }
+
+    CopyScheduler.Result resumeFromJournal(SyncJournal.Pending pending, CopyScheduler.CopyListener listener) {
+        logger.info("Возобновление синхронизации " + pending.targetType + " по журналу: осталось "
+                + pending.remaining.size() + " из " + pending.plannedCount + " файлов");
+        SyncPlan plan = new SyncPlan(pending.targetType);
+        int alreadyMoved = 0;
+        for (CopyScheduler.CopyTask task : pending.remaining) {
+            switch (task.operation) {
+                case CopyScheduler.CopyTask.MOVE:
+                    if (!Files.exists(task.source, LinkOption.NOFOLLOW_LINKS) && Files.exists(task.target, LinkOption.NOFOLLOW_LINKS)) {
+                        alreadyMoved++;
+                    } else {
+                        plan.moves.add(task);
+                    }
+                    break;
+                case CopyScheduler.CopyTask.DELETE:
+                    plan.deletions.add(task);
+                    break;
+                default:
+                    try {
+                        Files.deleteIfExists(FileCopier.tempFileFor(task.target));
+                    } catch (IOException e) {
+                        logger.warning("Не удалось удалить временный файл для " + task.target + ": " + e.getMessage());
+                    }
+                    (task.operation.equals(CopyScheduler.CopyTask.LINK) ? plan.links : plan.tasks).add(task);
+            }
+        }
+        if (alreadyMoved > 0) {
+            logger.info("Перемещения, выполненные до сбоя: " + alreadyMoved);
+        }
+        return executePlan(plan, listener);
+    }
+
+    void offerJournalResume() {
+        if (!journalEnabled || pathA == null || pathB == null) {
+            return;
+        }
+        SyncJournal.Pending pending = loadPendingJournal();
+        if (pending == null) {
+            return;
+        }
+        System.out.print("Найдена незавершенная синхронизация " + pending.targetType + ": осталось "
+                + pending.remaining.size() + " из " + pending.plannedCount + " файлов. Продолжить? (y/n): ");
+        if (!consoleScanner.nextLine().trim().equalsIgnoreCase("y")) {
+            logger.info("Незавершенная синхронизация отменена пользователем.");
+            discardJournal();
+            return;
+        }
+        CopyScheduler.Result result = resumeFromJournal(pending, null);
+        System.out.println("\n--- Отчет о синхронизации ---");
+        System.out.println("Успешно скопировано: " + result.successCount);
+        System.out.println("Ошибки: " + result.errorCount);
+        System.out.println("-----------------------------");
+        logger.info("Возобновленная синхронизация завершена. Успешно: " + result.successCount + ", Ошибки: " + result.errorCount);
+    }
+
+    SyncPlan planCopies(ComparisonTable items, String targetType, Set<Integer> selectedIndices, boolean forceOverwrite) {
+        SyncPlan plan = new SyncPlan(targetType);
+        plan.roots = new Path[]{pathA, pathB, targetType.equals("MERGE_TO_C") ? pathC : null};
+        FileStatus staleStatus = targetType.equals("A_TO_B") ? FileStatus.DELETED_IN_A
+                : targetType.equals("B_TO_A") ? FileStatus.DELETED_IN_B : null;
+        List<ComparisonInfo> stale = new ArrayList<>();
+
+        for (int row = 0; row < items.size(); row++) {
+            int displayIndex = items.displayIndex(row);
+            if (displayIndex <= 0 || (!selectedIndices.isEmpty() && !selectedIndices.contains(displayIndex))) {
+                continue;
+            }
+            if (targetType.equals("MERGE_TO_C") && pathC == null) {
+                plan.errorCount++;
+                continue;
+            }
+            ComparisonInfo info = items.info(row, pathA, pathB);
+            if (info.status == staleStatus) {
+                stale.add(info);
+                continue;
+            }
+            CopyScheduler.CopyTask task = planCopy(info, lastScanMapA.get(info.relativePath), lastScanMapB.get(info.relativePath),
+                    targetType, forceOverwrite);
+            if (task != null) {
+                plan.tasks.add(task);
+            }
+        }
+
+        if (detectMoves && !stale.isEmpty()) {
+            planMoves(plan, stale, targetType.equals("A_TO_B"));
+        }
+        if (propagateDeletes) {
+            Path targetRoot = targetType.equals("A_TO_B") ? pathB : pathA;
+            Map<String, ScanEntry> targetMap = targetType.equals("A_TO_B") ? lastScanMapB : lastScanMapA;
+            for (ComparisonInfo info : stale) {
+                ScanEntry entry = targetMap.get(info.relativePath);
+                plan.deletions.add(new CopyScheduler.CopyTask(CopyScheduler.CopyTask.DELETE, info.relativePath,
+                        null, targetRoot.resolve(info.relativePath), info.status.label, info.displayIndex,
+                        entry != null ? entry.size : 0));
+            }
+        }
+        if (dedupMerge && targetType.equals("MERGE_TO_C")) {
+            deduplicate(plan);
+        }
+        return plan;
+    }
+
+    void deduplicate(SyncPlan plan) {
+        Map<Long, List<CopyScheduler.CopyTask>> bySize = new HashMap<>();
+        for (CopyScheduler.CopyTask task : plan.tasks) {
+            if (task.size > 0) {
+                bySize.computeIfAbsent(task.size, k -> new ArrayList<>()).add(task);
+            }
+        }
+        Map<CopyScheduler.CopyTask, ScanEntry> sources = new IdentityHashMap<>();
+        Map<CopyScheduler.CopyTask, String> remoteHashes = new IdentityHashMap<>();
+        for (List<CopyScheduler.CopyTask> sameSize : bySize.values()) {
+            if (sameSize.size() < 2) {
+                continue;
+            }
+            for (CopyScheduler.CopyTask task : sameSize) {
+                try {
+                    if (agentClient != null && task.source.startsWith(pathB)) {
+                        remoteHashes.put(task, agentClient.hash(task.relativePath));
+                    } else {
+                        sources.put(task, ScanEntry.of(task.source, Files.readAttributes(task.source, BasicFileAttributes.class)));
+                    }
+                } catch (IOException e) {
+                    logger.warning("Не удалось вычислить контрольную сумму для дедупликации: " + task.relativePath
+                            + " Ошибка: " + e.getMessage());
+                }
+            }
+        }
+        Map<Path, String> localHashes = hashWithChecksumCache(sources.values());
+        Map<CopyScheduler.CopyTask, CopyScheduler.CopyTask> primaries = new IdentityHashMap<>();
+        int differentTimes = 0;
+        for (List<CopyScheduler.CopyTask> sameSize : bySize.values()) {
+            if (sameSize.size() < 2) {
+                continue;
+            }
+            Map<String, CopyScheduler.CopyTask> byHash = new HashMap<>();
+            Map<String, CopyScheduler.CopyTask> byVersion = new HashMap<>();
+            for (CopyScheduler.CopyTask task : sameSize) {
+                ScanEntry source = sources.get(task);
+                String hash = source != null ? localHashes.get(source.path) : remoteHashes.get(task);
+                ScanEntry scanned = source != null ? source : lastScanMapB.get(task.relativePath);
+                if (hash == null || scanned == null) {
+                    continue;
+                }
+                CopyScheduler.CopyTask primary = byVersion.putIfAbsent(hash + ":" + scanned.lastModifiedNanos, task);
+                if (primary != null) {
+                    primaries.put(task, primary);
+                    continue;
+                }
+                CopyScheduler.CopyTask sameContent = byHash.putIfAbsent(hash, task);
+                if (sameContent != null) {
+                    differentTimes++;
+                    logger.fine("Дубликат копируется отдельно, время изменения отличается: " + task.relativePath
+                            + " и " + sameContent.relativePath);
+                }
+            }
+        }
+        if (differentTimes > 0) {
+            logger.info("Дубликаты с другим временем изменения копируются без жестких ссылок: " + differentTimes);
+        }
+        if (primaries.isEmpty()) {
+            return;
+        }
+        for (Iterator<CopyScheduler.CopyTask> it = plan.tasks.iterator(); it.hasNext(); ) {
+            CopyScheduler.CopyTask task = it.next();
+            CopyScheduler.CopyTask primary = primaries.get(task);
+            if (primary != null) {
+                it.remove();
+                plan.links.add(new CopyScheduler.CopyTask(CopyScheduler.CopyTask.LINK, task.relativePath, primary.target,
+                        task.target, task.reason + ", ДУБЛИКАТ " + primary.relativePath, task.displayIndex, task.size));
+            }
+        }
+        logger.info("Дедупликация: " + plan.links.size() + " файлов будут созданы как жесткие ссылки ("
+                + SyncPlan.formatBytes(plan.linkedBytes()) + " не копируются)");
+    }
+
+    CopyScheduler.Result materializeLinks(SyncPlan plan, Set<Path> failedTargets, CopyScheduler.CopyListener listener) {
+        int successCount = 0;
+        int errorCount = 0;
+        int copied = 0;
+        for (CopyScheduler.CopyTask task : plan.links) {
+            boolean success = false;
+            if (failedTargets.contains(task.source)) {
+                logger.warning("[СБОЙ] Ссылка не создана (#" + task.displayIndex + "): " + task.relativePath
+                        + " - основная копия " + task.source + " не записана");
+            } else {
+                try {
+                    Files.createDirectories(task.target.getParent());
+                    if (!FileCopier.linkAtomically(task.source, task.target, this::attributesNotCopied)) {
+                        copied++;
+                    }
+                    logger.info("[ССЫЛКА] (#" + task.displayIndex + "): " + task.relativePath + " -> " + task.source);
+                    success = true;
+                } catch (IOException | SecurityException e) {
+                    metrics.recordError("link", e);
+                    logger.warning("[СБОЙ] Ошибка создания ссылки (#" + task.displayIndex + "): " + task.target + ": " + e.getMessage());
+                }
+            }
+            if (success) {
+                successCount++;
+            } else {
+                errorCount++;
+            }
+            if (listener != null) {
+                listener.onCompleted(task, success);
+            }
+        }
+        if (copied > 0) {
+            logger.warning("Файловая система не поддерживает жесткие ссылки, дубликатов скопировано: " + copied);
+        }
+        logger.info("Создано ссылок на дубликаты: " + successCount + ", ошибок: " + errorCount);
+        return new CopyScheduler.Result(successCount, errorCount);
+    }
+
+    void planMoves(SyncPlan plan, List<ComparisonInfo> stale, boolean aToB) {
+        Map<String, ScanEntry> sourceMap = aToB ? lastScanMapA : lastScanMapB;
+        Map<String, ScanEntry> targetMap = aToB ? lastScanMapB : lastScanMapA;
+        Path targetRoot = aToB ? pathB : pathA;
+
+        Map<String, List<ComparisonInfo>> staleByKey = new HashMap<>();
+        for (ComparisonInfo info : stale) {
+            ScanEntry entry = targetMap.get(info.relativePath);
+            if (entry != null) {
+                staleByKey.computeIfAbsent(entry.size + ":" + entry.lastModifiedNanos, k -> new ArrayList<>()).add(info);
+            }
+        }
+        if (staleByKey.isEmpty()) {
+            return;
+        }
+
+        ChecksumCache cache = openChecksumCache();
+        ContentHasher hasher = new ContentHasher(cache, 1, logger, metrics);
+        Set<ComparisonInfo> matched = new HashSet<>();
+        for (Iterator<CopyScheduler.CopyTask> it = plan.tasks.iterator(); it.hasNext(); ) {
+            CopyScheduler.CopyTask task = it.next();
+            ScanEntry newEntry = sourceMap.get(task.relativePath);
+            if (newEntry == null || targetMap.containsKey(task.relativePath)) {
+                continue;
+            }
+            List<ComparisonInfo> candidates = staleByKey.get(newEntry.size + ":" + newEntry.lastModifiedNanos);
+            if (candidates == null || candidates.isEmpty()) {
+                continue;
+            }
+            try {
+                String newHash = hashEntry(hasher, newEntry, task.relativePath);
+                for (Iterator<ComparisonInfo> c = candidates.iterator(); c.hasNext(); ) {
+                    ComparisonInfo candidate = c.next();
+                    ScanEntry oldEntry = targetMap.get(candidate.relativePath);
+                    if (newHash.equals(hashEntry(hasher, oldEntry, candidate.relativePath))) {
+                        c.remove();
+                        matched.add(candidate);
+                        it.remove();
+                        plan.moves.add(new CopyScheduler.CopyTask(CopyScheduler.CopyTask.MOVE, task.relativePath,
+                                oldEntry.path, targetRoot.resolve(task.relativePath),
+                                "ПЕРЕМЕЩЕН (было: " + candidate.relativePath + ")", task.displayIndex, newEntry.size));
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                logger.warning("Не удалось вычислить контрольную сумму для поиска перемещений: " + task.relativePath
+                        + " Ошибка: " + e.getMessage());
+            }
+        }
+        stale.removeAll(matched);
+        cache.save();
+        logger.info("Обнаружено перемещений: " + plan.moves.size());
+    }
+
+    String hashEntry(ContentHasher hasher, ScanEntry entry, String relativePath) throws IOException {
+        if (agentClient != null && entry.path.startsWith(pathB)) {
+            return agentClient.hash(relativePath);
+        }
+        return hasher.hash(entry);
+    }
+
+    CopyScheduler.CopyTask planCopy(ComparisonInfo info, ScanEntry entryA, ScanEntry entryB, String targetType, boolean forceOverwrite) {
+        String relativePath = info.relativePath;
+        FileStatus status = info.status;
+
+        Path sourcePath = null;
+        Path targetPath = null;
+        String reason = "";
+        boolean shouldCopy = false;
+
+        switch (targetType) {
+            case "A_TO_B":
+                if (status == FileStatus.NEW_IN_A || status == FileStatus.DELETED_IN_B || status == FileStatus.MODIFIED_A_NEWER || status == FileStatus.MODIFIED_SIZE || status == FileStatus.MODIFIED_CONTENT) {
+                    sourcePath = info.pathInA;
+                    targetPath = pathB.resolve(relativePath);
+                    shouldCopy = true;
+                    reason = status == FileStatus.NEW_IN_A ? "НОВЫЙ" : status == FileStatus.DELETED_IN_B ? "ВОССТАНОВЛЕН (удален в B)" : "ИЗМЕНЕН";
+                } else if (forceOverwrite && status == FileStatus.MODIFIED_B_NEWER) {
+                    sourcePath = info.pathInA;
+                    targetPath = pathB.resolve(relativePath);
+                    shouldCopy = true;
+                    reason = "ИЗМЕНЕН (Принудительно старый из А)";
+                }
+                break;
+
+            case "B_TO_A":
+                if (status == FileStatus.NEW_IN_B || status == FileStatus.DELETED_IN_A || status == FileStatus.MODIFIED_B_NEWER || status == FileStatus.MODIFIED_SIZE || status == FileStatus.MODIFIED_CONTENT) {
+                    sourcePath = info.pathInB;
+                    targetPath = pathA.resolve(relativePath);
+                    shouldCopy = true;
+                    reason = status == FileStatus.NEW_IN_B ? "НОВЫЙ" : status == FileStatus.DELETED_IN_A ? "ВОССТАНОВЛЕН (удален в А)" : "ИЗМЕНЕН";
+                } else if (forceOverwrite && status == FileStatus.MODIFIED_A_NEWER) {
+                    sourcePath = info.pathInB;
+                    targetPath = pathA.resolve(relativePath);
+                    shouldCopy = true;
+                    reason = "ИЗМЕНЕН (Принудительно старый из B)";
+                }
+                break;
+
+            case "MERGE_TO_C":
+                if (status == FileStatus.NEW_IN_A || (status == FileStatus.DELETED_IN_B && !propagateDeletes)) {
+                    sourcePath = info.pathInA;
+                    targetPath = pathC.resolve(relativePath);
+                    shouldCopy = true;
+                    reason = "НОВЫЙ УНИКАЛЬНЫЙ (из A)";
+                } else if (status == FileStatus.NEW_IN_B || (status == FileStatus.DELETED_IN_A && !propagateDeletes)) {
+                    sourcePath = info.pathInB;
+                    targetPath = pathC.resolve(relativePath);
+                    shouldCopy = true;
+                    reason = "НОВЫЙ УНИКАЛЬНЫЙ (из B)";
+                } else if (status == FileStatus.MODIFIED_A_NEWER || status == FileStatus.MODIFIED_SIZE || status == FileStatus.MODIFIED_CONTENT) {
+                    sourcePath = info.pathInA;
+                    targetPath = pathC.resolve(relativePath);
+                    shouldCopy = true;
+                    reason = "ИЗМЕНЕН (Новейший из А)";
+                } else if (status == FileStatus.MODIFIED_B_NEWER) {
+                    sourcePath = info.pathInB;
+                    targetPath = pathC.resolve(relativePath);
+                    shouldCopy = true;
+                    reason = "ИЗМЕНЕН (Новейший из B)";
+                }
+                break;
+        }
+
+        if (shouldCopy && sourcePath != null && targetPath != null) {
+            ScanEntry sourceEntry = sourcePath == info.pathInA ? entryA : entryB;
+            long size = sourceEntry != null ? sourceEntry.size : 0;
+            return new CopyScheduler.CopyTask(relativePath, sourcePath, targetPath, reason, info.displayIndex, size);
+        }
+        return null;
+    }
+
+    boolean copyFile(Path source, Path target) {
+        try {
+            Path targetDir = target.getParent();
+            if (targetDir != null && !Files.exists(targetDir)) {
+                Files.createDirectories(targetDir);
+            }
+        } catch (IOException | SecurityException e) {
+            logger.severe("Ошибка копирования " + source + " в " + target + ": " + e.getMessage());
+            return false;
+        }
+        return transferFile(source, target);
+    }
+
+    boolean transferFile(Path source, Path target) {
+        ioThrottle.acquireFiles(1);
+        long startNanos = metrics.start();
+        try {
+            long written;
+            if (deltaCopy && Files.size(source) >= deltaMinSize && Files.isRegularFile(target) && !isHardLinked(target)
+                    && markDeltaTarget(target)) {
+                BasicFileAttributes sourceAttrs = Files.readAttributes(source, BasicFileAttributes.class);
+                DeltaCopier.Stats stats = DeltaCopier.update(source, target);
+                logger.info("Дельта-копирование " + source.getFileName() + ": записано " + stats.writtenBytes
+                        + " из " + stats.totalBytes + " байт (" + stats.changedBlocks + " блоков)");
+                try {
+                    FileCopier.copyAttributes(sourceAttrs, target);
+                } catch (Exception attrError) {
+                    attributesNotCopied(target, attrError);
+                }
+                written = stats.writtenBytes;
+            } else {
+                written = FileCopier.copyAtomically(source, target, this::attributesNotCopied).size();
+            }
+
+            metrics.stop(SyncMetrics.STAGE_COPY_FILE, startNanos);
+            metrics.filesCopied.increment();
+            metrics.bytesCopied.add(written);
+            return true;
+        } catch (IOException | SecurityException e) {
+            metrics.recordError(SyncMetrics.STAGE_COPY_FILE, e);
+            logger.severe("Ошибка копирования " + source + " в " + target + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean markDeltaTarget(Path target) {
+        try {
+            Files.setLastModifiedTime(target, FileTime.fromMillis(0));
+            Path parent = target.getParent();
+            if (parent != null) {
+                Files.setLastModifiedTime(parent, FileTime.fromMillis(System.currentTimeMillis()));
+            }
+            return true;
+        } catch (IOException | SecurityException e) {
+            logger.fine("Дельта-копирование пропущено, не удалось пометить файл: " + target + " - " + e.getMessage());
+            return false;
+        }
+    }
+
+    void attributesNotCopied(Path target, Exception e) {
+        metrics.recordError("copy_attributes", e);
+        logger.warning("Не удалось скопировать атрибуты для: " + target + " - " + e.getMessage());
+    }
+
+    private boolean isHardLinked(Path target) {
+        try {
+            Object links = Files.getAttribute(target, "unix:nlink", LinkOption.NOFOLLOW_LINKS);
+            if (links instanceof Integer && (Integer) links > 1) {
+                logger.fine("Дельта-копирование пропущено, у файла есть жесткие ссылки: " + target);
+                return true;
+            }
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            logger.finer("Не удалось определить число ссылок для: " + target + " - " + e.getMessage());
+        }
+        return false;
+    }
+
+    boolean[] fanOutFile(Path source, List<Path> targets) {
+        boolean[] results = new boolean[targets.size()];
+        if (targets.size() == 1) {
+            results[0] = transferFile(source, targets.get(0));
+            return results;
+        }
+        ioThrottle.acquireFiles(targets.size());
+        long startNanos = metrics.start();
+        try {
+            FileCopier.FanOutResult copied = FileCopier.copyToMany(source, targets, this::attributesNotCopied);
+            metrics.stop(SyncMetrics.STAGE_COPY_FILE, startNanos);
+            for (int i = 0; i < targets.size(); i++) {
+                IOException failure = copied.failures.get(targets.get(i));
+                if (failure == null) {
+                    results[i] = true;
+                    metrics.filesCopied.increment();
+                    metrics.bytesCopied.add(copied.sourceAttrs.size());
+                } else {
+                    metrics.recordError(SyncMetrics.STAGE_COPY_FILE, failure);
+                    logger.severe("Ошибка копирования " + source + " в " + targets.get(i) + ": " + failure.getMessage());
+                }
+            }
+        } catch (IOException | SecurityException e) {
+            metrics.recordError(SyncMetrics.STAGE_COPY_FILE, e);
+            logger.severe("Ошибка чтения " + source + " для " + targets.size() + " каталогов назначения: " + e.getMessage());
+        }
+        return results;
+    }
+
+    int runAgentMode() {
+        if (pathA == null || !Files.isDirectory(pathA)) {
+            System.err.println("Ошибка: для режима агента укажите существующий каталог: " + pathA);
+            return 2;
+        }
+        String host = "127.0.0.1";
+        int port = SyncAgent.DEFAULT_PORT;
+        if (agentListen != null) {
+            int colon = agentListen.lastIndexOf(':');
+            try {
+                port = Integer.parseInt(agentListen.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                System.err.println("Ошибка: неверный адрес --listen=" + agentListen);
+                return 2;
+            }
+            if (colon >= 0) {
+                host = agentListen.substring(0, colon);
+            }
+        }
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        if (address.isUnresolved()) {
+            System.err.println("Ошибка: не удалось разрешить адрес --listen=" + agentListen);
+            return 2;
+        }
+        if ((agentToken == null || agentToken.isEmpty()) && !address.getAddress().isLoopbackAddress()) {
+            System.err.println("Ошибка: агент на внешнем адресе " + host + " требует --agent-token.");
+            return 2;
+        }
+        SyncAgent agent = new SyncAgent(pathA, address, agentToken, scanThreads, logger, metrics);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> closeAgent(agent)));
+        try {
+            agent.serve();
+            return 0;
+        } catch (IOException e) {
+            logger.severe("Агент синхронизации остановлен с ошибкой: " + e.getMessage());
+            return 1;
+        } finally {
+            closeAgent(agent);
+        }
+    }
+
+    private static void closeAgent(SyncAgent agent) {
+        try {
+            agent.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    int connectAgent() {
+        if (verifyContent) {
+            logger.warning("Сравнение по содержимому недоступно для удаленной Папки B, используется сравнение по размеру и дате.");
+            verifyContent = false;
+        }
+        if (journalEnabled) {
+            logger.info("Журнал синхронизации не используется с удаленной Папкой B.");
+            journalEnabled = false;
+        }
+        try {
+            agentClient = AgentClient.connect(remoteB, agentToken, logger, metrics);
+            pathFilter = null;
+            return 0;
+        } catch (IOException e) {
+            logger.severe("Не удалось подключиться к агенту " + remoteB + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    void disconnectAgent() {
+        if (agentClient != null) {
+            try {
+                agentClient.close();
+            } catch (IOException e) {
+                logger.warning("Ошибка закрытия соединения с агентом: " + e.getMessage());
+            }
+            agentClient = null;
+        }
+    }
+
+    int runBatchMode() {
+        if (List.of("pack", "unpack", "pack-list").contains(batchMode)) {
+            return runPackMode();
+        }
+        if (remoteB == null) {
+            return runLocalBatchMode();
+        }
+        if (streamingCompare || threeWayMerge || applyPlanPath != null) {
+            System.err.println("Ошибка: --streaming, --three-way и --apply-plan не поддерживаются с удаленной Папкой B.");
+            return 2;
+        }
+        int status = connectAgent();
+        if (status != 0) {
+            return status;
+        }
+        try {
+            return runLocalBatchMode();
+        } finally {
+            disconnectAgent();
+        }
+    }
+
+    int runLocalBatchMode() {
+        if (!batchMode.equals("analyze") && !batchMode.equals("sync")) {
+            System.err.println("Ошибка: неизвестный режим " + batchMode + ". Допустимо: analyze, sync, pack, unpack, pack-list");
+            return 2;
+        }
+        if (applyPlanPath != null) {
+            return batchMode.equals("sync") ? runPlanFile() : 2;
+        }
+        if (!List.of("A_TO_B", "B_TO_A", "MERGE_TO_C", "FAN_OUT").contains(batchDirection)) {
+            System.err.println("Ошибка: неизвестное направление " + batchDirection + ". Допустимо: A_TO_B, B_TO_A, MERGE_TO_C, FAN_OUT");
+            return 2;
+        }
+        ResultWriter.Format format;
+        try {
+            format = ResultWriter.Format.parse(outputFormat);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ошибка: неизвестный формат " + outputFormat + ". Допустимо: jsonl, csv");
+            return 2;
+        }
+        if (batchDirection.equals("FAN_OUT")) {
+            if (!checkFanOutArguments()) {
+                return 2;
+            }
+        } else if (pathA == null || pathB == null || !Files.isDirectory(pathA) || (remoteB == null && !Files.isDirectory(pathB))) {
+            System.err.println("Ошибка: Папка А и Папка B должны быть существующими каталогами.");
+            return 2;
+        }
+        if (batchMode.equals("sync") && batchDirection.equals("MERGE_TO_C")) {
+            if (pathC == null || pathC.equals(pathA) || pathC.equals(pathB)) {
+                System.err.println("Ошибка: для слияния требуется Папка C, отличная от Папок А и B.");
+                return 2;
+            }
+        }
+
+        logger.info("Пакетный режим: " + batchMode + (batchMode.equals("sync") ? " " + batchDirection : "")
+                + (dryRun ? " [ПРОБНЫЙ ЗАПУСК]" : "") + (streamingCompare ? " [ПОТОКОВЫЙ]" : ""));
+        if (batchMode.equals("sync") && !dryRun && journalEnabled) {
+            SyncJournal.Pending pending = loadPendingJournal();
+            if (pending != null && pending.targetType.equals(batchDirection)) {
+                try (ResultWriter writer = ResultWriter.open(format, outputPath)) {
+                    IOException[] writeError = new IOException[1];
+                    CopyScheduler.Result result = resumeFromJournal(pending, (task, success) -> {
+                        try {
+                            writer.write(copyRecord(task, success ? "OK" : "ERROR"));
+                        } catch (IOException e) {
+                            writeError[0] = e;
+                        }
+                    });
+                    logger.info("Возобновленная синхронизация завершена. Успешно: " + result.successCount + ", Ошибки: " + result.errorCount);
+                    if (writeError[0] != null) {
+                        throw writeError[0];
+                    }
+                    return result.errorCount > 0 ? 1 : 0;
+                } catch (IOException e) {
+                    logger.severe("Ошибка записи результатов: " + e.getMessage());
+                    return 1;
+                }
+            } else if (pending != null) {
+                logger.warning("Журнал незавершенной синхронизации " + pending.targetType
+                        + " не совпадает с направлением " + batchDirection + " и будет отброшен.");
+                discardJournal();
+            }
+        }
+        if (batchDirection.equals("FAN_OUT")) {
+            return runFanOut(format);
+        }
+        if (threeWayMerge && batchMode.equals("sync") && batchDirection.equals("MERGE_TO_C")) {
+            try (ResultWriter writer = ResultWriter.open(format, outputPath)) {
+                MergeBase.Summary summary = runThreeWayMerge(writer);
+                logger.info("Трехстороннее слияние завершено. Скопировано: " + summary.copied + ", конфликтов: "
+                        + summary.conflicts + ", ошибок: " + summary.errors);
+                return summary.errors > 0 || summary.conflicts > 0 ? 1 : 0;
+            } catch (IOException e) {
+                logger.severe("Ошибка записи результатов: " + e.getMessage());
+                return 1;
+            }
+        }
+        if (streamingCompare) {
+            return runStreamingBatch(format);
+        }
+        scanBothDirectories();
+        if (scanFailed) {
+            return 1;
+        }
+        compareLists();
+        assignDisplayIndexes();
+
+        try (ResultWriter writer = ResultWriter.open(format, outputPath)) {
+            if (batchMode.equals("analyze")) {
+                for (int row = 0; row < lastComparisonResult.size(); row++) {
+                    ComparisonInfo info = lastComparisonResult.info(row, pathA, pathB);
+                    writer.write(comparisonRecord(info, lastScanMapA.get(info.relativePath), lastScanMapB.get(info.relativePath)));
+                }
+                return 0;
+            }
+
+            return runBatchPlan(planCopies(lastComparisonResult, batchDirection, Set.of(), forceOverwriteFlag), writer);
+        } catch (IOException e) {
+            logger.severe("Ошибка записи результатов: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    int runBatchPlan(SyncPlan plan, ResultWriter writer) throws IOException {
+        for (String line : describePlan(plan)) {
+            logger.info(line);
+        }
+        if (savePlanPath != null) {
+            return savePlan(plan, savePlanPath) && plan.errorCount == 0 ? 0 : 1;
+        }
+        if (dryRun) {
+            for (List<CopyScheduler.CopyTask> tasks : List.of(plan.moves, plan.deletions, plan.tasks, plan.links)) {
+                for (CopyScheduler.CopyTask task : tasks) {
+                    writer.write(copyRecord(task, "DRY_RUN"));
+                }
+            }
+            logger.info("Пробный запуск: запланировано копирований " + plan.tasks.size()
+                    + ", перемещений " + plan.moves.size() + ", удалений " + plan.deletions.size());
+            return plan.errorCount > 0 ? 1 : 0;
+        }
+        IOException[] writeError = new IOException[1];
+        CopyScheduler.Result result = executePlan(plan, (task, success) -> {
+            try {
+                writer.write(copyRecord(task, success ? "OK" : "ERROR"));
+            } catch (IOException e) {
+                writeError[0] = e;
+            }
+        });
+        int errorCount = plan.errorCount + result.errorCount;
+        logger.info("Синхронизация завершена. Успешно: " + result.successCount + ", Ошибки: " + errorCount);
+        if (writeError[0] != null) {
+            throw writeError[0];
+        }
+        return errorCount > 0 ? 1 : 0;
+    }
+
+    int runPackMode() {
+        int required = batchMode.equals("pack-list") ? 1 : 2;
+        if (remoteB != null || positionalPathCount < required) {
+            System.err.println("Ошибка: используйте --mode=pack <каталог> <каталог архива>, --mode=unpack <каталог архива> <каталог>"
+                    + " или --mode=pack-list <каталог архива>.");
+            return 2;
+        }
+        if (batchMode.equals("pack")) {
+            if (!Files.isDirectory(pathA)) {
+                System.err.println("Ошибка: Папка А должна быть существующим каталогом: " + pathA);
+                return 2;
+            }
+            if (pathB.toAbsolutePath().normalize().startsWith(pathA.toAbsolutePath().normalize())) {
+                System.err.println("Ошибка: каталог архива не может находиться внутри упаковываемого каталога.");
+                return 2;
+            }
+            Map<String, ScanEntry> files = scanDirectory(pathA);
+            logger.info("Упаковка " + files.size() + " файлов в " + pathB + " (сегмент " + SyncPlan.formatBytes(packSegmentSize)
+                    + (packCompress ? ", со сжатием" : "") + ")");
+            long startNanos = metrics.start();
+            try {
+                PackArchive.Summary summary = PackArchive.pack(files, pathB, packSegmentSize, packCompress, copyThreads, logger);
+                metrics.stop(SyncMetrics.STAGE_SYNC, startNanos);
+                logger.info("Упаковка завершена. Файлов: " + summary.files + " (" + SyncPlan.formatBytes(summary.bytes)
+                        + "), сегментов: " + summary.segments + ", ошибок: " + summary.errors);
+                return summary.errors > 0 ? 1 : 0;
+            } catch (IOException e) {
+                logger.severe("Ошибка упаковки в " + pathB + ": " + e.getMessage());
+                return 1;
+            }
+        }
+        PackArchive archive;
+        try {
+            archive = PackArchive.open(pathA);
+        } catch (IOException e) {
+            System.err.println("Ошибка: не удалось прочитать индекс архива " + pathA + ": " + e.getMessage());
+            return 2;
+        }
+        if (batchMode.equals("pack-list")) {
+            try (ResultWriter writer = ResultWriter.open(ResultWriter.Format.parse(outputFormat), outputPath)) {
+                for (PackArchive.Entry entry : archive.getEntries()) {
+                    Map<String, Object> record = new LinkedHashMap<>();
+                    record.put("path", entry.relativePath);
+                    record.put("segment", archive.getSegments().get(entry.segment - 1));
+                    record.put("offset", entry.offset);
+                    record.put("size", entry.size);
+                    record.put("mtime", FileTime.from(entry.lastModifiedNanos, TimeUnit.NANOSECONDS).toString());
+                    writer.write(record);
+                }
+                return 0;
+            } catch (IOException | IllegalArgumentException e) {
+                logger.severe("Ошибка записи результатов: " + e.getMessage());
+                return 1;
+            }
+        }
+        long startNanos = metrics.start();
+        if (!packPaths.isEmpty()) {
+            int errors = 0;
+            for (String relativePath : packPaths) {
+                PackArchive.Entry entry = archive.find(relativePath);
+                if (entry == null) {
+                    errors++;
+                    logger.warning("Файл не найден в индексе архива: " + relativePath);
+                    continue;
+                }
+                try {
+                    archive.extract(entry, pathB.resolve(relativePath));
+                    logger.info("Извлечен из архива: " + relativePath + " (" + SyncPlan.formatBytes(entry.size) + ")");
+                } catch (IOException e) {
+                    errors++;
+                    logger.severe("Ошибка извлечения " + relativePath + ": " + e.getMessage());
+                }
+            }
+            metrics.stop(SyncMetrics.STAGE_SYNC, startNanos);
+            return errors > 0 ? 1 : 0;
+        }
+        try {
+            PackArchive.Summary summary = archive.unpack(pathB, copyThreads, logger);
+            metrics.stop(SyncMetrics.STAGE_SYNC, startNanos);
+            logger.info("Распаковка завершена. Файлов: " + summary.files + " (" + SyncPlan.formatBytes(summary.bytes)
+                    + ") из сегментов: " + summary.segments + ", ошибок: " + summary.errors);
+            return summary.errors > 0 ? 1 : 0;
+        } catch (IOException e) {
+            logger.severe("Ошибка распаковки в " + pathB + ": " + e.getMessage());
+            return 1;
+        }
+    }
+
+    boolean checkFanOutArguments() {
+        if (remoteB != null || streamingCompare || threeWayMerge || tracksDeletions()) {
+            System.err.println("Ошибка: удаленные каталоги, --streaming, --three-way, --propagate-deletes и --detect-moves"
+                    + " не поддерживаются с --direction=FAN_OUT.");
+            return false;
+        }
+        if (pathA == null || !Files.isDirectory(pathA)) {
+            System.err.println("Ошибка: Папка А должна быть существующим каталогом: " + pathA);
+            return false;
+        }
+        if (fanOutTargets.isEmpty()) {
+            System.err.println("Ошибка: для --direction=FAN_OUT укажите после Папки А хотя бы один каталог назначения.");
+            return false;
+        }
+        Path source = pathA.toAbsolutePath().normalize();
+        Set<Path> seen = new HashSet<>();
+        for (Path target : fanOutTargets) {
+            Path normalized = target.toAbsolutePath().normalize();
+            if (normalized.startsWith(source) || source.startsWith(normalized) || !seen.add(normalized)) {
+                System.err.println("Ошибка: каталог назначения " + target + " совпадает с Папкой А, вложен в нее или указан дважды.");
+                return false;
+            }
+            if (Files.exists(target) && !Files.isDirectory(target)) {
+                System.err.println("Ошибка: каталог назначения " + target + " не является каталогом.");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int runFanOut(ResultWriter.Format format) {
+        boolean sync = batchMode.equals("sync");
+        logger.info("Веерная синхронизация: " + pathA + " -> " + fanOutTargets.size() + " каталогов назначения");
+        List<Path> roots = new ArrayList<>();
+        roots.add(pathA);
+        roots.addAll(fanOutTargets);
+        List<Map<String, ScanEntry>> maps = scanRoots(roots);
+        lastScanMapA = maps.get(0);
+        try (ResultWriter writer = ResultWriter.open(format, outputPath)) {
+            SyncPlan plan = planFanOut(roots, maps, sync ? null : writer);
+            return sync ? runBatchPlan(plan, writer) : 0;
+        } catch (IOException e) {
+            logger.severe("Ошибка записи результатов: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    List<Map<String, ScanEntry>> scanRoots(List<Path> roots) {
+        List<Path> existing = new ArrayList<>();
+        for (Path root : roots) {
+            if (Files.isDirectory(root)) {
+                existing.add(root);
+            } else {
+                logger.info("Каталог назначения " + root + " не существует и будет создан при синхронизации.");
+            }
+        }
+        logger.info("Параллельное сканирование " + existing.size() + " каталогов (потоков: " + scanThreads + ")");
+        long startNanos = metrics.start();
+        PathFilter filter = pathFilter();
+        List<Map<String, ScanEntry>> scanned;
+        try (ParallelDirectoryScanner scanner = new ParallelDirectoryScanner(scanThreads, logger, metrics, filter, ioThrottle)) {
+            if (incrementalScan) {
+                String suffix = "-" + filter.fingerprint() + ScanSnapshot.SCAN_SUFFIX;
+                scanned = scanner.scanAll(existing, loadSnapshots(existing, suffix));
+                saveSnapshots(existing, scanner.getLastSnapshots(), suffix);
+            } else {
+                scanned = scanner.scanAll(existing);
+            }
+        }
+        metrics.stop(SyncMetrics.STAGE_SCAN, startNanos);
+        List<Map<String, ScanEntry>> maps = new ArrayList<>(roots.size());
+        for (Path root : roots) {
+            int position = existing.indexOf(root);
+            Map<String, ScanEntry> map = position >= 0 ? scanned.get(position) : new HashMap<>();
+            logger.info("Найдено " + map.size() + " файлов в " + root);
+            maps.add(map);
+        }
+        return maps;
+    }
+
+    SyncPlan planFanOut(List<Path> roots, List<Map<String, ScanEntry>> maps, ResultWriter analyzeWriter) throws IOException {
+        SyncPlan plan = new SyncPlan("FAN_OUT");
+        plan.roots = new Path[]{pathA, null, null};
+        long startNanos = metrics.start();
+        Set<String> allRelativePaths = new HashSet<>();
+        for (Map<String, ScanEntry> map : maps) {
+            allRelativePaths.addAll(map.keySet());
+        }
+        List<String> relativePaths = new ArrayList<>(allRelativePaths);
+        relativePaths.sort(SortedTreeWalker.PATH_ORDER);
+        Map<Path, String> contentHashes = verifyContent ? hashFanOutCandidates(relativePaths, maps) : Map.of();
+        Map<String, ScanEntry> source = maps.get(0);
+        int displayIndex = 0;
+        for (String relativePath : relativePaths) {
+            ScanEntry entryA = source.get(relativePath);
+            displayIndex++;
+            for (int t = 1; t < maps.size(); t++) {
+                ScanEntry entryT = maps.get(t).get(relativePath);
+                if (entryA == null && entryT == null) {
+                    continue;
+                }
+                Path targetPath = roots.get(t).resolve(relativePath);
+                FileStatus status = classify(entryA, entryT, contentHashes);
+                if (analyzeWriter != null) {
+                    ComparisonInfo info = new ComparisonInfo(relativePath, status, pathA.resolve(relativePath), targetPath);
+                    info.displayIndex = displayIndex;
+                    Map<String, Object> record = comparisonRecord(info, entryA, entryT);
+                    record.put("target", roots.get(t).toString());
+                    analyzeWriter.write(record);
+                    continue;
+                }
+                String reason = null;
+                if (status == FileStatus.NEW_IN_A || status == FileStatus.MODIFIED_A_NEWER
+                        || status == FileStatus.MODIFIED_SIZE || status == FileStatus.MODIFIED_CONTENT) {
+                    reason = status == FileStatus.NEW_IN_A ? "НОВЫЙ" : "ИЗМЕНЕН";
+                } else if (forceOverwriteFlag && status == FileStatus.MODIFIED_B_NEWER) {
+                    reason = "ИЗМЕНЕН (Принудительно старый из А)";
+                } else if (status == FileStatus.READ_ERROR || status == FileStatus.ERROR) {
+                    plan.errorCount++;
+                }
+                if (reason != null) {
+                    plan.tasks.add(new CopyScheduler.CopyTask(relativePath, entryA.path, targetPath,
+                            reason + " -> " + roots.get(t), displayIndex, entryA.size));
+                }
+            }
+        }
+        metrics.stop(SyncMetrics.STAGE_COMPARE, startNanos);
+        logger.info("Сравнение завершено. Путей: " + relativePaths.size() + ", каталогов назначения: " + (maps.size() - 1)
+                + ", копирований: " + plan.tasks.size());
+        return plan;
+    }
+
+    Map<Path, String> hashFanOutCandidates(List<String> relativePaths, List<Map<String, ScanEntry>> maps) {
+        Map<Path, ScanEntry> toHash = new LinkedHashMap<>();
+        for (String relativePath : relativePaths) {
+            ScanEntry entryA = maps.get(0).get(relativePath);
+            if (entryA == null) {
+                continue;
+            }
+            for (int t = 1; t < maps.size(); t++) {
+                ScanEntry entryT = maps.get(t).get(relativePath);
+                if (entryT != null && entryT.size == entryA.size) {
+                    toHash.put(entryA.path, entryA);
+                    toHash.put(entryT.path, entryT);
+                }
+            }
+        }
+        if (toHash.isEmpty()) {
+            return Map.of();
+        }
+        logger.info("Проверка содержимого: " + toHash.size() + " файлов для хеширования");
+        return hashWithChecksumCache(toHash.values());
+    }
+
+    int runPlanFile() {
+        SyncPlan plan;
+        try {
+            plan = SyncPlan.load(applyPlanPath);
+        } catch (IOException e) {
+            System.err.println("Ошибка: не удалось прочитать план " + applyPlanPath + ": " + e.getMessage());
+            return 2;
+        }
+        Path[] given = {pathA, pathB, pathC};
+        for (int i = 0; i < Math.min(positionalPathCount, given.length); i++) {
+            if (plan.roots[i] != null
+                    && !given[i].toAbsolutePath().normalize().equals(plan.roots[i])) {
+                System.err.println("Ошибка: план " + applyPlanPath + " составлен для каталога " + plan.roots[i]
+                        + ", а указан " + given[i]);
+                return 2;
+            }
+        }
+        pathA = plan.roots[0] != null ? plan.roots[0] : pathA;
+        pathB = plan.roots[1] != null ? plan.roots[1] : pathB;
+        pathC = plan.roots[2] != null ? plan.roots[2] : pathC;
+        logger.info("Выполнение плана " + applyPlanPath.toAbsolutePath());
+        for (String line : describePlan(plan)) {
+            logger.info(line);
+        }
+        if (dryRun) {
+            return 0;
+        }
+        ResultWriter.Format format;
+        try {
+            format = ResultWriter.Format.parse(outputFormat);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ошибка: неизвестный формат " + outputFormat + ". Допустимо: jsonl, csv");
+            return 2;
+        }
+        try (ResultWriter writer = ResultWriter.open(format, outputPath)) {
+            IOException[] writeError = new IOException[1];
+            CopyScheduler.CopyListener listener = (task, success) -> {
+                try {
+                    writer.write(copyRecord(task, success ? "OK" : "ERROR"));
+                } catch (IOException e) {
+                    writeError[0] = e;
+                }
+            };
+            int changed = dropChangedPlanEntries(plan, listener);
+            CopyScheduler.Result result = executePlan(plan, listener);
+            int errorCount = result.errorCount + changed;
+            logger.info("Выполнение плана завершено. Успешно: " + result.successCount + ", Ошибки: " + errorCount);
+            if (writeError[0] != null) {
+                throw writeError[0];
+            }
+            return errorCount > 0 ? 1 : 0;
+        } catch (IOException e) {
+            logger.severe("Ошибка записи результатов: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    int dropChangedPlanEntries(SyncPlan plan, CopyScheduler.CopyListener listener) {
+        Set<Path> droppedTargets = new HashSet<>();
+        int dropped = 0;
+        for (List<CopyScheduler.CopyTask> tasks : List.of(plan.moves, plan.deletions, plan.tasks, plan.links)) {
+            for (Iterator<CopyScheduler.CopyTask> it = tasks.iterator(); it.hasNext(); ) {
+                CopyScheduler.CopyTask task = it.next();
+                String problem;
+                if (task.operation.equals(CopyScheduler.CopyTask.LINK)) {
+                    problem = droppedTargets.contains(task.source) ? "основная копия " + task.source + " пропущена" : null;
+                } else {
+                    problem = planEntryChange(task, plan.plannedModified.get(task));
+                }
+                if (problem == null) {
+                    continue;
+                }
+                it.remove();
+                droppedTargets.add(task.target);
+                dropped++;
+                logger.warning("[ПРОПУЩЕН] План устарел (#" + task.displayIndex + "): " + task.relativePath + " - " + problem);
+                if (listener != null) {
+                    listener.onCompleted(task, false);
+                }
+            }
+        }
+        if (dropped > 0) {
+            logger.warning("Пропущено операций плана из-за изменений на диске: " + dropped);
+        }
+        return dropped;
+    }
+
+    private String planEntryChange(CopyScheduler.CopyTask task, Long plannedModified) {
+        Path subject = SyncPlan.subjectOf(task);
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(subject, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException | SecurityException e) {
+            return "файл " + subject + " недоступен";
+        }
+        if (attrs.size() != task.size) {
+            return "размер " + subject + " изменился: " + task.size + " -> " + attrs.size();
+        }
+        if (plannedModified != null && attrs.lastModifiedTime().toMillis() != plannedModified) {
+            return "дата изменения " + subject + " изменилась";
+        }
+        return null;
+    }
+
+    int runStreamingBatch(ResultWriter.Format format) {
+        boolean sync = batchMode.equals("sync");
+        try (ResultWriter writer = ResultWriter.open(format, outputPath);
+             CopyScheduler.Session session = new CopyScheduler(copyThreads, logger, this::transferFile)
+                     .openSession(copyThreads * 4, (task, success) -> {
+                         try {
+                             writer.write(copyRecord(task, success ? "OK" : "ERROR"));
+                         } catch (IOException e) {
+                             logger.severe("Ошибка записи результатов: " + e.getMessage());
+                         }
+                     })) {
+            int[] planned = new int[1];
+            long compared = streamCompare((info, entryA, entryB) -> {
+                if (!sync) {
+                    writer.write(comparisonRecord(info, entryA, entryB));
+                    return;
+                }
+                CopyScheduler.CopyTask task = planCopy(info, entryA, entryB, batchDirection, forceOverwriteFlag);
+                if (task == null) {
+                    return;
+                }
+                planned[0]++;
+                if (dryRun) {
+                    writer.write(copyRecord(task, "DRY_RUN"));
+                } else {
+                    session.submit(task);
+                }
+            });
+            CopyScheduler.Result result = session.finish();
+            logger.info("Потоковое сравнение завершено. Путей: " + compared + ", к копированию: " + planned[0]);
+            if (sync && !dryRun) {
+                logger.info("Синхронизация завершена. Успешно: " + result.successCount + ", Ошибки: " + result.errorCount);
+            }
+            return result.errorCount > 0 ? 1 : 0;
+        } catch (IOException e) {
+            logger.severe("Ошибка записи результатов: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.severe("Пакетный режим прерван.");
+            return 1;
+        }
+    }
+
+    long streamCompare(ComparisonSink sink) throws IOException, InterruptedException {
+        SortedTreeWalker walkerA = new SortedTreeWalker(pathA, logger, metrics, pathFilter(), ioThrottle);
+        SortedTreeWalker walkerB = new SortedTreeWalker(pathB, logger, metrics, pathFilter(), ioThrottle);
+        ChecksumCache cache = null;
+        ContentHasher hasher = null;
+        if (verifyContent) {
+            cache = openChecksumCache();
+            hasher = new ContentHasher(cache, 1, logger, metrics);
+        }
+
+        Map.Entry<String, ScanEntry> a = walkerA.hasNext() ? walkerA.next() : null;
+        Map.Entry<String, ScanEntry> b = walkerB.hasNext() ? walkerB.next() : null;
+        int index = 0;
+        while (a != null || b != null) {
+            int cmp = a == null ? 1 : b == null ? -1 : SortedTreeWalker.PATH_ORDER.compare(a.getKey(), b.getKey());
+            String relativePath;
+            ScanEntry entryA = null;
+            ScanEntry entryB = null;
+            if (cmp <= 0) {
+                relativePath = a.getKey();
+                entryA = a.getValue();
+                a = walkerA.hasNext() ? walkerA.next() : null;
+            } else {
+                relativePath = b.getKey();
+            }
+            if (cmp >= 0) {
+                entryB = b.getValue();
+                b = walkerB.hasNext() ? walkerB.next() : null;
+            }
+
+            Map<Path, String> contentHashes = Map.of();
+            if (hasher != null && entryA != null && entryB != null && entryA.size == entryB.size) {
+                contentHashes = new HashMap<>();
+                try {
+                    contentHashes.put(entryA.path, hasher.hash(entryA));
+                    contentHashes.put(entryB.path, hasher.hash(entryB));
+                } catch (IOException e) {
+                    logger.warning("Не удалось вычислить контрольную сумму: " + relativePath + " Ошибка: " + e.getMessage());
+                }
+            }
+            ComparisonInfo info = new ComparisonInfo(relativePath, classify(entryA, entryB, contentHashes),
+                    entryA != null ? entryA.path : null, entryB != null ? entryB.path : null);
+            info.displayIndex = ++index;
+            sink.accept(info, entryA, entryB);
+        }
+        if (cache != null) {
+            cache.save();
+        }
+        return index;
+    }
+
+    MergeBase.Summary runThreeWayMerge(ResultWriter writer) {
+        MergeBase.Summary summary = new MergeBase.Summary();
+        Path baseFile = MergeBase.fileFor(snapshotDir, pathA, pathB, pathC);
+        logger.info("Трехстороннее слияние в " + pathC + ", база: " + baseFile.toAbsolutePath());
+        ChecksumCache cache = null;
+        ContentHasher hasher = null;
+        if (verifyContent) {
+            cache = openChecksumCache();
+            hasher = new ContentHasher(cache, 1, logger, metrics);
+        }
+
+        SyncPlan plan = new SyncPlan("MERGE_TO_C");
+        Map<String, MergeBase.Record> previousForTasks = new HashMap<>();
+        try (MergeBase.Reader base = MergeBase.Reader.open(baseFile);
+             MergeBase.Writer nextBase = new MergeBase.Writer(baseFile, ".tmp")) {
+            long startNanos = metrics.start();
+            SortedTreeWalker walkerA = new SortedTreeWalker(pathA, logger, metrics, pathFilter(), ioThrottle);
+            SortedTreeWalker walkerB = new SortedTreeWalker(pathB, logger, metrics, pathFilter(), ioThrottle);
+            Map.Entry<String, ScanEntry> a = walkerA.hasNext() ? walkerA.next() : null;
+            Map.Entry<String, ScanEntry> b = walkerB.hasNext() ? walkerB.next() : null;
+            int index = 0;
+            while (a != null || b != null || base.hasNext()) {
+                String relativePath = null;
+                for (String candidate : new String[]{a != null ? a.getKey() : null, b != null ? b.getKey() : null,
+                        base.hasNext() ? base.peek().path : null}) {
+                    if (candidate != null && (relativePath == null || SortedTreeWalker.PATH_ORDER.compare(candidate, relativePath) < 0)) {
+                        relativePath = candidate;
+                    }
+                }
+                ScanEntry entryA = null;
+                ScanEntry entryB = null;
+                MergeBase.Record previous = null;
+                if (a != null && a.getKey().equals(relativePath)) {
+                    entryA = a.getValue();
+                    a = walkerA.hasNext() ? walkerA.next() : null;
+                }
+                if (b != null && b.getKey().equals(relativePath)) {
+                    entryB = b.getValue();
+                    b = walkerB.hasNext() ? walkerB.next() : null;
+                }
+                if (base.hasNext() && base.peek().path.equals(relativePath)) {
+                    previous = base.next();
+                }
+                if (entryA == null && entryB == null) {
+                    continue;
+                }
+
+                String hashA = null;
+                String hashB = null;
+                Map<Path, String> contentHashes = Map.of();
+                if (hasher != null) {
+                    try {
+                        hashA = needsHash(entryA, entryB, previous != null ? previous.a : null) ? hasher.hash(entryA) : null;
+                        hashB = needsHash(entryB, entryA, previous != null ? previous.b : null) ? hasher.hash(entryB) : null;
+                    } catch (IOException e) {
+                        logger.warning("Не удалось вычислить контрольную сумму: " + relativePath + " Ошибка: " + e.getMessage());
+                    }
+                    if (hashA != null && hashB != null) {
+                        contentHashes = Map.of(entryA.path, hashA, entryB.path, hashB);
+                    }
+                }
+                boolean identical = entryA != null && entryB != null
+                        && classify(entryA, entryB, contentHashes) == FileStatus.IDENTICAL;
+                MergeBase.Change change = MergeBase.classify(previous, entryA, entryB, identical, hashA, hashB);
+                MergeBase.Record current = new MergeBase.Record(relativePath,
+                        MergeBase.Side.of(entryA, hashA), MergeBase.Side.of(entryB, hashB));
+                index++;
+
+                switch (change) {
+                    case UNCHANGED:
+                        summary.unchanged++;
+                        nextBase.write(current);
+                        break;
+                    case CHANGED_IN_A:
+                    case CHANGED_IN_B:
+                    case SAME_IN_BOTH:
+                    case NEWER_IN_A:
+                    case NEWER_IN_B:
+                        ScanEntry source = change == MergeBase.Change.CHANGED_IN_B || change == MergeBase.Change.NEWER_IN_B
+                                ? entryB : entryA;
+                        plan.tasks.add(new CopyScheduler.CopyTask(relativePath, source.path, pathC.resolve(relativePath),
+                                change.label, index, source.size));
+                        previousForTasks.put(relativePath, previous);
+                        nextBase.write(current);
+                        break;
+                    case DELETED_IN_A:
+                    case DELETED_IN_B:
+                        summary.deleted++;
+                        logger.info("[" + change.label + "] " + relativePath + " - в Папку C не копируется");
+                        nextBase.write(current);
+                        break;
+                    case CONFLICT:
+                        summary.conflicts++;
+                        logger.warning("[КОНФЛИКТ] " + relativePath + " изменен и в А, и в B - требуется ручное разрешение");
+                        if (writer != null) {
+                            writer.write(conflictRecord(index, relativePath, entryA, entryB));
+                        }
+                        if (previous != null) {
+                            nextBase.write(previous);
+                        }
+                        break;
+                }
+            }
+            nextBase.finish();
+            metrics.stop(SyncMetrics.STAGE_COMPARE, startNanos);
+            logger.info("Классификация завершена. Путей: " + index + ", к копированию: " + plan.tasks.size()
+                    + ", удалено: " + summary.deleted + ", конфликтов: " + summary.conflicts);
+            if (dedupMerge) {
+                deduplicate(plan);
+            }
+
+            if (dryRun) {
+                if (writer != null) {
+                    for (List<CopyScheduler.CopyTask> tasks : List.of(plan.tasks, plan.links)) {
+                        for (CopyScheduler.CopyTask task : tasks) {
+                            writer.write(copyRecord(task, "DRY_RUN"));
+                        }
+                    }
+                }
+                return summary;
+            }
+
+            Set<String> failedPaths = ConcurrentHashMap.newKeySet();
+            CopyScheduler.Result result = executePlan(plan, (task, success) -> {
+                if (!success) {
+                    failedPaths.add(task.relativePath);
+                }
+                if (writer != null) {
+                    try {
+                        writer.write(copyRecord(task, success ? "OK" : "ERROR"));
+                    } catch (IOException e) {
+                        logger.severe("Ошибка записи результатов: " + e.getMessage());
+                    }
+                }
+            });
+            summary.copied = result.successCount;
+            summary.errors = result.errorCount;
+
+            if (failedPaths.isEmpty()) {
+                nextBase.commit();
+            } else {
+                try (MergeBase.Reader written = MergeBase.Reader.open(nextBase.tempFile());
+                     MergeBase.Writer fixedBase = new MergeBase.Writer(baseFile, ".fix")) {
+                    while (written.hasNext()) {
+                        MergeBase.Record record = written.next();
+                        if (!failedPaths.contains(record.path)) {
+                            fixedBase.write(record);
+                        } else if (previousForTasks.get(record.path) != null) {
+                            fixedBase.write(previousForTasks.get(record.path));
+                        }
+                    }
+                    fixedBase.commit();
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            summary.errors++;
+            logger.severe("Ошибка трехстороннего слияния: " + e.getMessage());
+        }
+        if (cache != null) {
+            cache.save();
+        }
+        return summary;
+    }
+
+    private static boolean needsHash(ScanEntry entry, ScanEntry other, MergeBase.Side baseSide) {
+        if (entry == null) {
+            return false;
+        }
+        return (other != null && other.size == entry.size)
+                || (baseSide != null && baseSide.size == entry.size && baseSide.lastModifiedNanos != entry.lastModifiedNanos);
+    }
+
+    Map<String, Object> conflictRecord(int index, String relativePath, ScanEntry entryA, ScanEntry entryB) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("index", index);
+        record.put("path", relativePath);
+        record.put("reason", MergeBase.Change.CONFLICT.label);
+        record.put("sizeA", entryA != null ? entryA.size : null);
+        record.put("sizeB", entryB != null ? entryB.size : null);
+        record.put("mtimeA", entryA != null ? entryA.getLastModifiedTime().toString() : null);
+        record.put("mtimeB", entryB != null ? entryB.getLastModifiedTime().toString() : null);
+        record.put("result", "CONFLICT");
+        return record;
+    }
+
+    void printMergeSummary(MergeBase.Summary summary) {
+        System.out.println("\n--- Отчет о трехстороннем слиянии ---");
+        System.out.println("Успешно скопировано: " + summary.copied);
+        System.out.println("Без изменений: " + summary.unchanged);
+        System.out.println("Удалено (не копируется): " + summary.deleted);
+        System.out.println("Конфликты: " + summary.conflicts);
+        System.out.println("Ошибки: " + summary.errors);
+        System.out.println("-------------------------------------");
+        logger.info("Трехстороннее слияние завершено. Скопировано: " + summary.copied + ", конфликтов: "
+                + summary.conflicts + ", ошибок: " + summary.errors);
+    }
+
+    Map<String, Object> comparisonRecord(ComparisonInfo info, ScanEntry entryA, ScanEntry entryB) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("index", info.displayIndex);
+        record.put("path", info.relativePath);
+        record.put("status", info.status.label);
+        record.put("statusCode", info.status.name());
+        record.put("sizeA", entryA != null ? entryA.size : null);
+        record.put("sizeB", entryB != null ? entryB.size : null);
+        record.put("mtimeA", entryA != null ? entryA.getLastModifiedTime().toString() : null);
+        record.put("mtimeB", entryB != null ? entryB.getLastModifiedTime().toString() : null);
+        return record;
+    }
+
+    Map<String, Object> copyRecord(CopyScheduler.CopyTask task, String result) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("index", task.displayIndex);
+        record.put("operation", task.operation);
+        record.put("path", task.relativePath);
+        record.put("source", task.source != null ? task.source.toString() : null);
+        record.put("target", task.target.toString());
+        record.put("reason", task.reason);
+        record.put("size", task.size);
+        record.put("result", result);
+        return record;
+    }
+
+    void runWatchMode() {
+        List<String> directions = List.of("BOTH", "A_TO_B", "B_TO_A", "MERGE_TO_C");
+        if (!directions.contains(watchDirection)) {
+            System.out.println("Ошибка: неизвестное направление наблюдения " + watchDirection + ". Допустимо: " + directions);
+            return;
+        }
+        if (pathA == null || pathB == null || !Files.isDirectory(pathA) || !Files.isDirectory(pathB)) {
+            System.out.println("Ошибка: для режима наблюдения Папка А и Папка B должны быть существующими каталогами.");
+            return;
+        }
+        if (watchDirection.equals("MERGE_TO_C") && pathC == null) {
+            System.out.println("Ошибка: для слияния в режиме наблюдения требуется Папка C.");
+            return;
+        }
+
+        logger.info("Режим наблюдения: " + watchDirection + ", задержка пакета " + watchDebounceMillis + " мс");
+        if (watchDirection.equals("BOTH") && !tracksDeletions()) {
+            propagateDeletes = true;
+            logger.info("Двустороннее наблюдение: удаления распространяются в обе стороны (--propagate-deletes включен автоматически)");
+        }
+        try (DirectoryWatcher watcher = new DirectoryWatcher(List.of(pathA, pathB), watchDebounceMillis, logger, pathFilter())) {
+            watcher.registerAll();
+            Runtime.getRuntime().addShutdownHook(new Thread(watcher::close));
+            Runtime.getRuntime().addShutdownHook(new Thread(this::saveWatchedSnapshots));
+            watching = true;
+            watchedSnapshotsSavedNanos = System.nanoTime();
+
+            scanBothDirectories();
+            compareLists();
+            assignDisplayIndexes();
+            syncWatchBatch(lastComparisonResult);
+
+            watcher.run(this::processWatchBatch);
+        } catch (IOException e) {
+            logger.severe("Не удалось запустить наблюдение за каталогами: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        saveWatchedSnapshots();
+        logger.info("Режим наблюдения завершен.");
+    }
+
+    void processWatchBatch(Set<String> dirtyPaths, boolean overflow) {
+        if (overflow) {
+            logger.warning("Переполнение очереди событий, выполняется полное сканирование.");
+            List<ScanSnapshot> synced = previousSnapshots;
+            scanBothDirectories();
+            if (tracksDeletions()) {
+                previousSnapshots = synced;
+            }
+            compareLists();
+            assignDisplayIndexes();
+            syncWatchBatch(lastComparisonResult);
+            return;
+        }
+
+        Set<String> affected = new HashSet<>();
+        List<String> removedPrefixes = new ArrayList<>();
+        for (String relativePath : dirtyPaths) {
+            ScanEntry entryA = statEntry(pathA, relativePath);
+            ScanEntry entryB = statEntry(pathB, relativePath);
+            if (entryA == null && entryB == null) {
+                removedPrefixes.add(relativePath + "/");
+            }
+            updateScanEntry(lastScanMapA, relativePath, entryA);
+            updateScanEntry(lastScanMapB, relativePath, entryB);
+            affected.add(relativePath);
+        }
+        if (!removedPrefixes.isEmpty()) {
+            Set<String> removedKeys = new HashSet<>();
+            for (Map<String, ScanEntry> scanMap : List.of(lastScanMapA, lastScanMapB)) {
+                for (String key : scanMap.keySet()) {
+                    for (String prefix : removedPrefixes) {
+                        if (key.startsWith(prefix)) {
+                            removedKeys.add(key);
+                            break;
+                        }
+                    }
+                }
+            }
+            for (String relativePath : removedKeys) {
+                updateScanEntry(lastScanMapA, relativePath, statEntry(pathA, relativePath));
+                updateScanEntry(lastScanMapB, relativePath, statEntry(pathB, relativePath));
+            }
+            affected.addAll(removedKeys);
+        }
+
+        ComparisonTable batch = classifyPaths(affected);
+        logger.info("Пакет изменений: " + dirtyPaths.size() + " событий, " + batch.size() + " путей к проверке");
+        syncWatchBatch(batch);
+    }
+
+    void syncWatchBatch(ComparisonTable batch) {
+        Set<Integer> toB = new HashSet<>();
+        Set<Integer> toA = new HashSet<>();
+        for (int row = 0; row < batch.size(); row++) {
+            FileStatus status = batch.status(row);
+            if (status == FileStatus.NEW_IN_B || status == FileStatus.MODIFIED_B_NEWER || status == FileStatus.DELETED_IN_B) {
+                toA.add(batch.displayIndex(row));
+            } else if (status != FileStatus.IDENTICAL) {
+                toB.add(batch.displayIndex(row));
+            }
+        }
+        if (watchDirection.equals("BOTH")) {
+            if (!toB.isEmpty()) {
+                synchronizeFiles(batch, "A_TO_B", toB, false);
+            }
+            if (!toA.isEmpty()) {
+                synchronizeFiles(batch, "B_TO_A", toA, false);
+            }
+        } else if (!toA.isEmpty() || !toB.isEmpty()) {
+            synchronizeFiles(batch, watchDirection, Set.of(), false);
+        }
+        if (tracksDeletions()) {
+            refreshWatchedSnapshots(batch);
+        }
+    }
+
+    synchronized void refreshWatchedSnapshots(ComparisonTable batch) {
+        List<String> relativePaths = new ArrayList<>(batch.size());
+        for (int row = 0; row < batch.size(); row++) {
+            String relativePath = batch.relativePath(row);
+            updateScanEntry(lastScanMapA, relativePath, statEntry(pathA, relativePath));
+            updateScanEntry(lastScanMapB, relativePath, statEntry(pathB, relativePath));
+            relativePaths.add(relativePath);
+        }
+        if (scannedSnapshots.size() != 2) {
+            return;
+        }
+        if (scannedSnapshots.get(0) != null) {
+            scannedSnapshots.get(0).update(pathA, relativePaths, lastScanMapA);
+        }
+        if (scannedSnapshots.get(1) != null) {
+            scannedSnapshots.get(1).update(pathB, relativePaths, lastScanMapB);
+        }
+        previousSnapshots = scannedSnapshots;
+        watchedSnapshotsDirty = true;
+        if (System.nanoTime() - watchedSnapshotsSavedNanos >= WATCH_SNAPSHOT_SAVE_NANOS) {
+            saveWatchedSnapshots();
+        }
+    }
+
+    synchronized void saveWatchedSnapshots() {
+        if (!watchedSnapshotsDirty) {
+            return;
+        }
+        saveSyncedSnapshots(watchDirection);
+        watchedSnapshotsDirty = false;
+        watchedSnapshotsSavedNanos = System.nanoTime();
+    }
+
+    ScanEntry statEntry(Path root, String relativePath) {
+        Path file = root.resolve(relativePath);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return attrs.isDirectory() ? null : ScanEntry.of(file, attrs);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    void updateScanEntry(Map<String, ScanEntry> scanMap, String relativePath, ScanEntry entry) {
+        if (entry != null) {
+            scanMap.put(relativePath, entry);
+        } else {
+            scanMap.remove(relativePath);
+        }
+    }
+
+    void runChangePathsMenu() {
+        System.out.println("\n===== Смена Каталогов / Лог-файла =====");
+        System.out.println("1. Сменить Папку А (Текущий: " + pathA + ")");
+        System.out.println("2. Сменить Папку B (Текущий: " + pathB + ")");
+        System.out.println("3. Сменить Папку C (Текущий: " + (pathC != null ? pathC : "Не задана") + ")");
+        System.out.println("4. Сменить путь к Лог-файлу (Текущий: " + logFilePath + ")");
+        System.out.println("5. Назад");
+        System.out.println("========================================");
+        System.out.print("Выберите действие: ");
+
+        int choice;
+        try {
+            choice = Integer.parseInt(consoleScanner.nextLine());
+        } catch (NumberFormatException e) {
+            choice = -1;
+        }
+
+        String newPathStr;
+        switch (choice) {
+            case 1:
+                System.out.print("Новый путь для Папки А: ");
+                newPathStr = consoleScanner.nextLine().trim();
+                if (!newPathStr.isEmpty()) {
+                    Path newP = Paths.get(newPathStr);
+                    if (Files.isDirectory(newP) && !newP.equals(pathB) && !newP.equals(pathC)) {
+                        pathA = newP;
+                        lastComparisonResult = ComparisonTable.empty();
+                        lastNumberedItemCount = 0;
+                        logger.info("Путь к Папке А изменен на: " + pathA);
+                    } else {
+                        System.out.println("Ошибка: Неверный каталог или совпадает с Папкой B/C.");
+                    }
+                } else {
+                    System.out.println("Путь не изменен.");
+                }
+                break;
+            case 2:
+                System.out.print("Новый путь для Папки B: ");
+                newPathStr = consoleScanner.nextLine().trim();
+                if (!newPathStr.isEmpty()) {
+                    Path newP = Paths.get(newPathStr);
+                    if (Files.isDirectory(newP) && !newP.equals(pathA) && !newP.equals(pathC)) {
+                        pathB = newP;
+                        lastComparisonResult = ComparisonTable.empty();
+                        lastNumberedItemCount = 0;
+                        logger.info("Путь к Папке B изменен на: " + pathB);
+                    } else System.out.println("Ошибка: Неверный каталог или совпадает с Папкой A/C.");
+                } else System.out.println("Путь не изменен.");
+                break;
+            case 3:
+                System.out.print("Новый путь для Папки C (пусто для сброса): ");
+                newPathStr = consoleScanner.nextLine().trim();
+                if (!newPathStr.isEmpty()) {
+                    Path newP = Paths.get(newPathStr);
+                    if (!newP.equals(pathA) && !newP.equals(pathB)) {
+                        try {
+                            if (!Files.exists(newP)) Files.createDirectories(newP);
+                            if (Files.isDirectory(newP)) {
+                                pathC = newP; logger.info("Путь к Папке C изменен на: " + pathC);
+                            } else {
+                                System.out.println("Ошибка: Путь для Папки С не является каталогом.");
+                            }
+                        } catch (IOException e) {
+                            System.out.println("Ошибка создания каталога C: " + e.getMessage());
+                        }
+                    } else {
+                        System.out.println("Ошибка: Папка C не может совпадать с Папкой А или B.");
+                    }
+                } else {
+                    pathC = null; logger.info("Путь к Папке C сброшен."); System.out.println("Путь к Папке C сброшен.");
+                }
+                break;
+            case 4:
+                System.out.print("Новый путь для Лог-файла: ");
+                newPathStr = consoleScanner.nextLine().trim();
+                if (!newPathStr.isEmpty()) {
+                    closeLogger();
+                    logFilePath = newPathStr;
+                    try {
+                        setupLogger();
+                        System.out.println("Путь к лог-файлу изменен.");
+                    } catch (IOException e) {
+                        System.err.println("Ошибка установки нового лог-файла: " + e.getMessage());
+                        logFilePath = "LOGS.log";
+                        try { setupLogger(); } catch (IOException ignored) {}
+                        System.out.println("Путь к лог-файлу НЕ изменен. Используется путь по умолчанию.");
+                    }
+                } else {
+                    System.out.println("Путь не изменен.");
+                }
+                break;
+            case 5:
+                return;
+            default: System.out.println("Неверный выбор.");
+        }
+        runChangePathsMenu();
+    }
+}
\ No newline at end of file
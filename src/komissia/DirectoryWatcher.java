@@ -0,0 +1,140 @@
+package komissia;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+public class DirectoryWatcher implements AutoCloseable {
+
+    interface BatchHandler {
+        void onBatch(Set<String> dirtyPaths, boolean overflow);
+    }
+
+    private final List<Path> roots;
+    private final long debounceMillis;
+    private final Logger logger;
+    private final PathFilter filter;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path[]> keys = new ConcurrentHashMap<>();
+    private final Set<String> dirtyPaths = new HashSet<>();
+    private boolean overflow = false;
+    private volatile boolean closed = false;
+
+    public DirectoryWatcher(List<Path> roots, long debounceMillis, Logger logger) throws IOException {
+        this(roots, debounceMillis, logger, PathFilter.NONE);
+    }
+
+    public DirectoryWatcher(List<Path> roots, long debounceMillis, Logger logger, PathFilter filter) throws IOException {
+        this.roots = roots;
+        this.debounceMillis = debounceMillis;
+        this.logger = logger;
+        this.filter = filter;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    public void registerAll() throws IOException {
+        for (Path root : roots) {
+            registerTree(root, root, false);
+        }
+        logger.info("Наблюдение за каталогами: " + keys.size() + " каталогов зарегистрировано");
+    }
+
+    private void registerTree(Path root, Path start, boolean markFiles) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (!dir.equals(root) && filter.excludesDirectory(relativize(root, dir), dir.getFileName().toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                keys.put(key, new Path[]{root, dir});
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (markFiles && !filter.excludesFile(relativize(root, file), file.getFileName().toString())) {
+                    dirtyPaths.add(relativize(root, file));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                logger.warning("Ошибка доступа к файлу/каталогу: " + file + " Ошибка: " + exc.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    static String relativize(Path root, Path file) {
+        return root.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    public void run(BatchHandler handler) throws InterruptedException {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = dirtyPaths.isEmpty() && !overflow
+                        ? watchService.take()
+                        : watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            if (key == null) {
+                Set<String> batch = new HashSet<>(dirtyPaths);
+                boolean batchOverflow = overflow;
+                dirtyPaths.clear();
+                overflow = false;
+                handler.onBatch(batch, batchOverflow);
+                continue;
+            }
+            collectEvents(key);
+        }
+    }
+
+    private void collectEvents(WatchKey key) {
+        Path[] rootAndDir = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || rootAndDir == null) {
+                overflow = true;
+                continue;
+            }
+            Path root = rootAndDir[0];
+            Path changed = rootAndDir[1].resolve((Path) event.context());
+            String relativePath = relativize(root, changed);
+            boolean directory = Files.isDirectory(changed, LinkOption.NOFOLLOW_LINKS);
+            if (filter.excludes(relativePath, directory)) {
+                continue;
+            }
+            dirtyPaths.add(relativePath);
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && directory) {
+                try {
+                    registerTree(root, changed, true);
+                } catch (IOException e) {
+                    logger.warning("Не удалось зарегистрировать новый каталог: " + changed + " Ошибка: " + e.getMessage());
+                    overflow = true;
+                }
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warning("Ошибка закрытия службы наблюдения: " + e.getMessage());
+        }
+    }
+}
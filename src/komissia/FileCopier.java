@@ -0,0 +1,254 @@
+package komissia;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FileCopier {
+
+    interface AttributeListener {
+        void attributesNotCopied(Path target, IOException e);
+    }
+
+    static final class FanOutResult {
+        final BasicFileAttributes sourceAttrs;
+        final Map<Path, IOException> failures;
+
+        FanOutResult(BasicFileAttributes sourceAttrs, Map<Path, IOException> failures) {
+            this.sourceAttrs = sourceAttrs;
+            this.failures = failures;
+        }
+    }
+
+    static final int DIRECT_BUFFER_SIZE = 4 << 20;
+    static final long THROTTLED_CHUNK_SIZE = 1 << 20;
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE));
+    private static volatile IoThrottle throttle = IoThrottle.UNLIMITED;
+
+    private FileCopier() {
+    }
+
+    static IoThrottle throttle() {
+        return throttle;
+    }
+
+    static void setThrottle(IoThrottle value) {
+        throttle = value;
+    }
+
+    static long copy(Path source, Path target) throws IOException {
+        BasicFileAttributes sourceAttrs = copyContent(source, target);
+        copyAttributes(sourceAttrs, target);
+        return sourceAttrs.size();
+    }
+
+    static BasicFileAttributes copyContent(Path source, Path target) throws IOException {
+        BasicFileAttributes sourceAttrs = Files.readAttributes(source, BasicFileAttributes.class);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            transfer(in, out, sourceAttrs.size());
+        }
+        return sourceAttrs;
+    }
+
+    static BasicFileAttributes copyAtomically(Path source, Path target, AttributeListener attributeListener) throws IOException {
+        Path tempFile = tempFileFor(target);
+        try {
+            BasicFileAttributes sourceAttrs = copyContent(source, tempFile);
+            try {
+                copyAttributes(sourceAttrs, tempFile);
+            } catch (IOException e) {
+                attributeListener.attributesNotCopied(target, e);
+            }
+            try {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return sourceAttrs;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    static FanOutResult copyToMany(Path source, List<Path> targets, AttributeListener attributeListener) throws IOException {
+        BasicFileAttributes sourceAttrs = Files.readAttributes(source, BasicFileAttributes.class);
+        Map<Path, IOException> failures = new HashMap<>();
+        Path[] tempFiles = new Path[targets.size()];
+        FileChannel[] outs = new FileChannel[targets.size()];
+        try {
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+                int open = 0;
+                for (int i = 0; i < targets.size(); i++) {
+                    tempFiles[i] = tempFileFor(targets.get(i));
+                    try {
+                        outs[i] = FileChannel.open(tempFiles[i], StandardOpenOption.WRITE,
+                                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                        open++;
+                    } catch (IOException e) {
+                        failures.put(targets.get(i), e);
+                    }
+                }
+                IoThrottle limiter = throttle;
+                ByteBuffer buffer = BUFFERS.get();
+                buffer.clear();
+                if (limiter.isLimited()) {
+                    buffer.limit((int) THROTTLED_CHUNK_SIZE);
+                }
+                while (open > 0 && in.read(buffer) >= 0) {
+                    buffer.flip();
+                    limiter.acquireBytes((long) buffer.remaining() * open);
+                    for (int i = 0; i < outs.length; i++) {
+                        if (outs[i] == null) {
+                            continue;
+                        }
+                        ByteBuffer view = buffer.duplicate();
+                        try {
+                            long writeStart = System.nanoTime();
+                            while (view.hasRemaining()) {
+                                outs[i].write(view);
+                            }
+                            limiter.recordLatency(buffer.remaining(), System.nanoTime() - writeStart);
+                        } catch (IOException e) {
+                            failures.put(targets.get(i), e);
+                            closeQuietly(outs[i]);
+                            outs[i] = null;
+                            open--;
+                        }
+                    }
+                    buffer.clear();
+                    if (limiter.isLimited()) {
+                        buffer.limit((int) THROTTLED_CHUNK_SIZE);
+                    }
+                }
+            }
+            for (int i = 0; i < outs.length; i++) {
+                if (outs[i] == null) {
+                    continue;
+                }
+                try {
+                    outs[i].close();
+                    outs[i] = null;
+                    try {
+                        copyAttributes(sourceAttrs, tempFiles[i]);
+                    } catch (IOException e) {
+                        attributeListener.attributesNotCopied(targets.get(i), e);
+                    }
+                    try {
+                        Files.move(tempFiles[i], targets.get(i), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(tempFiles[i], targets.get(i), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } catch (IOException e) {
+                    failures.put(targets.get(i), e);
+                }
+            }
+            return new FanOutResult(sourceAttrs, failures);
+        } finally {
+            for (int i = 0; i < outs.length; i++) {
+                if (outs[i] != null) {
+                    closeQuietly(outs[i]);
+                }
+                if (tempFiles[i] != null) {
+                    try {
+                        Files.deleteIfExists(tempFiles[i]);
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    static boolean linkAtomically(Path existing, Path target, AttributeListener attributeListener) throws IOException {
+        Path tempFile = tempFileFor(target);
+        Files.deleteIfExists(tempFile);
+        try {
+            Files.createLink(tempFile, existing);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.deleteIfExists(tempFile);
+            copyAtomically(existing, target, attributeListener);
+            return false;
+        }
+        try {
+            try {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    static Path tempFileFor(Path target) {
+        return target.resolveSibling("." + target.getFileName() + ".komissia-tmp");
+    }
+
+    static long transfer(FileChannel in, FileChannel out, long expectedSize) throws IOException {
+        IoThrottle limiter = throttle;
+        long position = 0;
+        try {
+            while (position < expectedSize) {
+                long chunk = limiter.isLimited() ? Math.min(THROTTLED_CHUNK_SIZE, expectedSize - position) : expectedSize - position;
+                limiter.acquireBytes(chunk);
+                long writeStart = System.nanoTime();
+                long transferred = in.transferTo(position, chunk, out);
+                limiter.recordLatency(transferred, System.nanoTime() - writeStart);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        } catch (IOException e) {
+            out.truncate(position);
+        }
+        if (position >= expectedSize) {
+            return position;
+        }
+        return position + copyWithDirectBuffer(in, out, position);
+    }
+
+    static long copyWithDirectBuffer(FileChannel in, FileChannel out, long position) throws IOException {
+        IoThrottle limiter = throttle;
+        int chunkSize = limiter.isLimited() ? (int) THROTTLED_CHUNK_SIZE : DIRECT_BUFFER_SIZE;
+        ByteBuffer buffer = BUFFERS.get();
+        long copied = 0;
+        in.position(position);
+        out.position(position);
+        buffer.clear().limit(chunkSize);
+        while (in.read(buffer) >= 0) {
+            buffer.flip();
+            int length = buffer.remaining();
+            limiter.acquireBytes(length);
+            long writeStart = System.nanoTime();
+            while (buffer.hasRemaining()) {
+                copied += out.write(buffer);
+            }
+            limiter.recordLatency(length, System.nanoTime() - writeStart);
+            buffer.clear().limit(chunkSize);
+        }
+        return copied;
+    }
+
+    static void copyAttributes(BasicFileAttributes sourceAttrs, Path target) throws IOException {
+        Files.getFileAttributeView(target, BasicFileAttributeView.class)
+                .setTimes(sourceAttrs.lastModifiedTime(), sourceAttrs.lastAccessTime(), null);
+    }
+}
@@ -0,0 +1,48 @@
+package komissia;
+
+public enum FileStatus {
+    IDENTICAL("ИДЕНТИЧНЫЙ"),
+    MODIFIED_A_NEWER("ИЗМЕНЕН (А новее)"),
+    MODIFIED_B_NEWER("ИЗМЕНЕН (B новее)"),
+    MODIFIED_SIZE("ИЗМЕНЕН (размер)"),
+    MODIFIED_CONTENT("ИЗМЕНЕН (содержимое)"),
+    NEW_IN_A("НОВЫЙ (в А)"),
+    NEW_IN_B("НОВЫЙ (в B)"),
+    DELETED_IN_A("УДАЛЕН (в А)"),
+    DELETED_IN_B("УДАЛЕН (в B)"),
+    ERROR("ОШИБКА"),
+    READ_ERROR("ОШИБКА (чтение)");
+
+    private static final FileStatus[] VALUES = values();
+
+    final String label;
+
+    FileStatus(String label) {
+        this.label = label;
+    }
+
+    static FileStatus ofCode(byte code) {
+        return VALUES[code];
+    }
+
+    byte code() {
+        return (byte) ordinal();
+    }
+
+    boolean isNew() {
+        return this == NEW_IN_A || this == NEW_IN_B;
+    }
+
+    boolean isDeleted() {
+        return this == DELETED_IN_A || this == DELETED_IN_B;
+    }
+
+    boolean isModified() {
+        return this == MODIFIED_A_NEWER || this == MODIFIED_B_NEWER || this == MODIFIED_SIZE || this == MODIFIED_CONTENT;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
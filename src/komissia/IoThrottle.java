@@ -0,0 +1,239 @@
+package komissia;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+public class IoThrottle {
+
+    static final IoThrottle UNLIMITED = new IoThrottle(Profile.UNLIMITED, List.of(), false, Logger.getLogger("SimpleSync"));
+    private static final long PROFILE_CHECK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long MIN_LATENCY_SAMPLE = 64 << 10;
+    private static final double MIN_FACTOR = 0.1;
+    private static final long MIN_LATENCY_RISE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    static class Profile {
+        static final Profile UNLIMITED = new Profile(0, 0, 0, 0);
+
+        final int startMinute;
+        final int endMinute;
+        final long bytesPerSecond;
+        final long filesPerSecond;
+
+        Profile(int startMinute, int endMinute, long bytesPerSecond, long filesPerSecond) {
+            this.startMinute = startMinute;
+            this.endMinute = endMinute;
+            this.bytesPerSecond = bytesPerSecond;
+            this.filesPerSecond = filesPerSecond;
+        }
+
+        boolean covers(int minuteOfDay) {
+            if (startMinute == endMinute) {
+                return true;
+            }
+            return startMinute < endMinute
+                    ? minuteOfDay >= startMinute && minuteOfDay < endMinute
+                    : minuteOfDay >= startMinute || minuteOfDay < endMinute;
+        }
+
+        boolean isLimited() {
+            return bytesPerSecond > 0 || filesPerSecond > 0;
+        }
+
+        static Profile parse(String spec) {
+            String[] fields = spec.split(",");
+            String[] range = fields[0].split("-");
+            if (range.length != 2 || fields.length < 2 || fields.length > 3) {
+                throw new IllegalArgumentException("ожидается ЧЧ:ММ-ЧЧ:ММ,байт/с[,файлов/с]: " + spec);
+            }
+            return new Profile(parseMinute(range[0]), parseMinute(range[1]), parseRate(fields[1]),
+                    fields.length == 3 ? parseRate(fields[2]) : 0);
+        }
+
+        private static int parseMinute(String time) {
+            LocalTime parsed = LocalTime.parse(time.strip().length() == 4 ? "0" + time.strip() : time.strip());
+            return parsed.getHour() * 60 + parsed.getMinute();
+        }
+
+        @Override
+        public String toString() {
+            String limits = "байт/с: " + (bytesPerSecond > 0 ? SyncPlan.formatBytes(bytesPerSecond) : "без ограничений")
+                    + ", файлов/с: " + (filesPerSecond > 0 ? String.valueOf(filesPerSecond) : "без ограничений");
+            if (startMinute == endMinute) {
+                return limits;
+            }
+            return String.format(Locale.ROOT, "%02d:%02d-%02d:%02d ", startMinute / 60, startMinute % 60,
+                    endMinute / 60, endMinute % 60) + limits;
+        }
+    }
+
+    private static class Bucket {
+        private double tokens;
+        private long lastNanos = System.nanoTime();
+
+        synchronized long reserve(long amount, double ratePerSecond) {
+            long now = System.nanoTime();
+            tokens = Math.min(ratePerSecond, tokens + (now - lastNanos) * ratePerSecond / 1e9);
+            lastNanos = now;
+            tokens -= amount;
+            return tokens >= 0 ? 0 : (long) (-tokens / ratePerSecond * 1e9);
+        }
+    }
+
+    private final Profile defaultProfile;
+    private final List<Profile> profiles;
+    private final boolean adaptive;
+    private final Logger logger;
+    private final boolean limited;
+    private final Bucket bytes = new Bucket();
+    private final Bucket files = new Bucket();
+    private final LongAdder waitedNanos = new LongAdder();
+    private volatile Profile active;
+    private volatile long checkedNanos;
+    private volatile double factor = 1.0;
+    private double latency;
+    private double baseline;
+    private long adjustedNanos;
+
+    IoThrottle(Profile defaultProfile, List<Profile> profiles, boolean adaptive, Logger logger) {
+        this.defaultProfile = defaultProfile;
+        this.profiles = new ArrayList<>(profiles);
+        this.adaptive = adaptive;
+        this.logger = logger;
+        boolean anyLimit = defaultProfile.isLimited();
+        for (Profile profile : profiles) {
+            anyLimit |= profile.isLimited();
+        }
+        this.limited = anyLimit;
+        this.active = defaultProfile;
+        this.checkedNanos = System.nanoTime() - PROFILE_CHECK_NANOS;
+    }
+
+    static long parseRate(String value) {
+        String text = value.strip().toUpperCase(Locale.ROOT);
+        if (text.isEmpty() || text.equals("-")) {
+            return 0;
+        }
+        if (text.endsWith("B")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        int shift = text.endsWith("K") ? 10 : text.endsWith("M") ? 20 : text.endsWith("G") ? 30 : 0;
+        if (shift > 0) {
+            text = text.substring(0, text.length() - 1);
+        }
+        long rate = Long.parseLong(text.strip());
+        if (rate < 0) {
+            throw new NumberFormatException("отрицательное значение: " + value);
+        }
+        return rate << shift;
+    }
+
+    boolean isLimited() {
+        return limited;
+    }
+
+    long getWaitedNanos() {
+        return waitedNanos.sum();
+    }
+
+    double getFactor() {
+        return factor;
+    }
+
+    void acquireBytes(long amount) {
+        if (limited) {
+            acquire(bytes, amount, activeProfile().bytesPerSecond);
+        }
+    }
+
+    void acquireFiles(int amount) {
+        if (limited) {
+            acquire(files, amount, activeProfile().filesPerSecond);
+        }
+    }
+
+    private void acquire(Bucket bucket, long amount, long limit) {
+        if (limit <= 0 || amount <= 0) {
+            return;
+        }
+        long waitNanos = bucket.reserve(amount, limit * factor);
+        if (waitNanos <= 0) {
+            return;
+        }
+        waitedNanos.add(waitNanos);
+        try {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Profile activeProfile() {
+        long now = System.nanoTime();
+        if (now - checkedNanos < PROFILE_CHECK_NANOS) {
+            return active;
+        }
+        synchronized (this) {
+            if (now - checkedNanos >= PROFILE_CHECK_NANOS) {
+                LocalTime time = LocalTime.now();
+                int minuteOfDay = time.getHour() * 60 + time.getMinute();
+                Profile selected = defaultProfile;
+                for (Profile profile : profiles) {
+                    if (profile.covers(minuteOfDay)) {
+                        selected = profile;
+                        break;
+                    }
+                }
+                if (selected != active) {
+                    logger.info("Ограничение ввода-вывода переключено на профиль " + selected);
+                    active = selected;
+                }
+                checkedNanos = now;
+            }
+            return active;
+        }
+    }
+
+    void recordLatency(long amount, long nanos) {
+        if (!adaptive || !limited || amount < MIN_LATENCY_SAMPLE) {
+            return;
+        }
+        double sample = nanos * (double) (1 << 20) / amount;
+        synchronized (this) {
+            latency = latency == 0 ? sample : latency * 0.8 + sample * 0.2;
+            baseline = baseline == 0 ? latency : Math.min(latency, baseline * 1.001);
+            long now = System.nanoTime();
+            if (now - adjustedNanos < ADJUST_INTERVAL_NANOS) {
+                return;
+            }
+            double previous = factor;
+            if (latency > baseline * 2 && latency - baseline > MIN_LATENCY_RISE_NANOS) {
+                factor = Math.max(MIN_FACTOR, factor * 0.7);
+            } else if (latency < baseline * 1.25) {
+                factor = Math.min(1.0, factor + 0.1);
+            }
+            if (factor != previous) {
+                adjustedNanos = now;
+                logger.fine(String.format(Locale.ROOT, "Задержка записи %.1f мс/МБ (базовая %.1f), скорость %.0f%% от лимита",
+                        latency / 1e6, baseline / 1e6, factor * 100));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(defaultProfile.toString());
+        for (Profile profile : profiles) {
+            text.append("; ").append(profile);
+        }
+        if (adaptive) {
+            text.append("; адаптивно по задержке записи");
+        }
+        return text.toString();
+    }
+}
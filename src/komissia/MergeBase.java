@@ -0,0 +1,256 @@
+package komissia;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+public class MergeBase {
+
+    private static final int MAGIC = 0x4B4D5242;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HAS_A = 1;
+    private static final int HAS_B = 2;
+    private static final int HASH_A = 4;
+    private static final int HASH_B = 8;
+
+    enum Change {
+        UNCHANGED("БЕЗ ИЗМЕНЕНИЙ"),
+        CHANGED_IN_A("ИЗМЕНЕН ТОЛЬКО В А"),
+        CHANGED_IN_B("ИЗМЕНЕН ТОЛЬКО В B"),
+        SAME_IN_BOTH("ОДИНАКОВ В А И B"),
+        NEWER_IN_A("НОВЕЙШИЙ ИЗ А"),
+        NEWER_IN_B("НОВЕЙШИЙ ИЗ B"),
+        DELETED_IN_A("УДАЛЕН В А"),
+        DELETED_IN_B("УДАЛЕН В B"),
+        CONFLICT("КОНФЛИКТ");
+
+        final String label;
+
+        Change(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    static class Side {
+        final long size;
+        final long lastModifiedNanos;
+        final String hash;
+
+        Side(long size, long lastModifiedNanos, String hash) {
+            this.size = size;
+            this.lastModifiedNanos = lastModifiedNanos;
+            this.hash = hash;
+        }
+
+        static Side of(ScanEntry entry, String hash) {
+            return entry == null ? null : new Side(entry.size, entry.lastModifiedNanos, hash);
+        }
+
+        boolean matches(ScanEntry entry, String entryHash) {
+            if (entry == null || entry.size != size) {
+                return false;
+            }
+            if (entry.lastModifiedNanos == lastModifiedNanos) {
+                return true;
+            }
+            return hash != null && hash.equals(entryHash);
+        }
+    }
+
+    static class Record {
+        final String path;
+        final Side a;
+        final Side b;
+
+        Record(String path, Side a, Side b) {
+            this.path = path;
+            this.a = a;
+            this.b = b;
+        }
+    }
+
+    static class Summary {
+        int unchanged;
+        int copied;
+        int deleted;
+        int conflicts;
+        int errors;
+    }
+
+    static Path fileFor(Path snapshotDir, Path rootA, Path rootB, Path rootC) {
+        String key = rootA.toAbsolutePath().normalize() + "|" + rootB.toAbsolutePath().normalize()
+                + "|" + rootC.toAbsolutePath().normalize();
+        return snapshotDir.resolve("merge-" + UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)) + ".base");
+    }
+
+    static Change classify(Record base, ScanEntry entryA, ScanEntry entryB, boolean identical,
+                           String hashA, String hashB) {
+        boolean changedA = base == null || base.a == null ? entryA != null : !base.a.matches(entryA, hashA);
+        boolean changedB = base == null || base.b == null ? entryB != null : !base.b.matches(entryB, hashB);
+        if (!changedA && !changedB) {
+            return Change.UNCHANGED;
+        }
+        if (identical) {
+            return Change.SAME_IN_BOTH;
+        }
+        if (changedA && changedB) {
+            if (base == null && entryA != null && entryB != null) {
+                return entryB.lastModifiedNanos > entryA.lastModifiedNanos ? Change.NEWER_IN_B : Change.NEWER_IN_A;
+            }
+            return Change.CONFLICT;
+        }
+        if (changedA) {
+            return entryA == null ? Change.DELETED_IN_A : Change.CHANGED_IN_A;
+        }
+        return entryB == null ? Change.DELETED_IN_B : Change.CHANGED_IN_B;
+    }
+
+    static class Reader implements Iterator<Record>, Closeable {
+        private final DataInputStream in;
+        private Record next;
+
+        private Reader(DataInputStream in) throws IOException {
+            this.in = in;
+            advance();
+        }
+
+        static Reader open(Path file) throws IOException {
+            if (!Files.isRegularFile(file)) {
+                return new Reader(null);
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                    throw new IOException("Неподдерживаемый формат базы слияния: " + file);
+                }
+                return new Reader(in);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        private void advance() throws IOException {
+            next = null;
+            if (in == null || !in.readBoolean()) {
+                return;
+            }
+            String path = in.readUTF();
+            int flags = in.readUnsignedByte();
+            Side a = (flags & HAS_A) != 0 ? readSide(in, (flags & HASH_A) != 0) : null;
+            Side b = (flags & HAS_B) != 0 ? readSide(in, (flags & HASH_B) != 0) : null;
+            next = new Record(path, a, b);
+        }
+
+        private static Side readSide(DataInputStream in, boolean hasHash) throws IOException {
+            return new Side(in.readLong(), in.readLong(), hasHash ? in.readUTF() : null);
+        }
+
+        Record peek() {
+            return next;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Record next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Record current = next;
+            try {
+                advance();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Поврежденная база слияния", e);
+            }
+            return current;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    static class Writer implements Closeable {
+        private final Path file;
+        private final Path tempFile;
+        private final DataOutputStream out;
+        private boolean finished;
+
+        Writer(Path file, String tempSuffix) throws IOException {
+            this.file = file;
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.tempFile = file.resolveSibling(file.getFileName() + tempSuffix);
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+        }
+
+        Path tempFile() {
+            return tempFile;
+        }
+
+        void write(Record record) throws IOException {
+            if (record.a == null && record.b == null) {
+                return;
+            }
+            out.writeBoolean(true);
+            out.writeUTF(record.path);
+            int flags = (record.a != null ? HAS_A : 0) | (record.b != null ? HAS_B : 0)
+                    | (record.a != null && record.a.hash != null ? HASH_A : 0)
+                    | (record.b != null && record.b.hash != null ? HASH_B : 0);
+            out.writeByte(flags);
+            writeSide(record.a);
+            writeSide(record.b);
+        }
+
+        private void writeSide(Side side) throws IOException {
+            if (side == null) {
+                return;
+            }
+            out.writeLong(side.size);
+            out.writeLong(side.lastModifiedNanos);
+            if (side.hash != null) {
+                out.writeUTF(side.hash);
+            }
+        }
+
+        void finish() throws IOException {
+            out.writeBoolean(false);
+            out.close();
+            finished = true;
+        }
+
+        void commit() throws IOException {
+            if (!finished) {
+                finish();
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+            }
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package komissia;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+public class MetricsReporter implements AutoCloseable {
+
+    private final SyncMetrics metrics;
+    private final Logger logger;
+    private final PrintStream console;
+    private final Path metricsFile;
+    private final boolean json;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "metrics-reporter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MetricsReporter(SyncMetrics metrics, Logger logger, boolean showProgress, Path metricsFile,
+                           boolean json, long dumpIntervalSeconds) {
+        this.metrics = metrics;
+        this.logger = logger;
+        this.console = showProgress ? System.err : null;
+        this.metricsFile = metricsFile;
+        this.json = json;
+        if (console != null) {
+            executor.scheduleAtFixedRate(this::printProgress, 1, 1, TimeUnit.SECONDS);
+        }
+        if (metricsFile != null) {
+            long interval = Math.max(1, dumpIntervalSeconds);
+            executor.scheduleAtFixedRate(this::dumpSafely, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    private void printProgress() {
+        console.print("\r" + metrics.progressLine() + "   ");
+        console.flush();
+    }
+
+    private void dumpSafely() {
+        try {
+            dump();
+        } catch (IOException e) {
+            logger.warning("Не удалось записать метрики в " + metricsFile + ": " + e.getMessage());
+        }
+    }
+
+    synchronized void dump() throws IOException {
+        Path parent = metricsFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tempFile = metricsFile.resolveSibling(metricsFile.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            if (json) {
+                metrics.writeJson(out);
+            } else {
+                metrics.writePrometheus(out);
+            }
+        }
+        Files.move(tempFile, metricsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        if (console != null) {
+            printProgress();
+            console.println();
+        }
+        if (metricsFile != null) {
+            dumpSafely();
+        }
+    }
+}
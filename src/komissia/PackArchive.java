@@ -0,0 +1,699 @@
+package komissia;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class PackArchive {
+
+    static final String INDEX_FILE = "pack.index";
+    private static final String HEADER = "KOMISSIA-PACK\t2";
+    private static final String HEADER_V1 = "KOMISSIA-PACK\t1";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final int BLOCK = 512;
+    private static final int PREFETCH_LIMIT = 256 << 10;
+    private static final int PREFETCH_WINDOW = 512;
+    private static final int STREAM_BUFFER = 1 << 20;
+    private static final long MEMBER_SIZE = 1 << 20;
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+    private static final byte[] LONG_LINK_NAME = "././@LongLink".getBytes(StandardCharsets.US_ASCII);
+
+    static class Entry {
+        final String relativePath;
+        final int segment;
+        final long offset;
+        final long size;
+        final long lastModifiedNanos;
+        final long memberOffset;
+        final long memberStart;
+
+        Entry(String relativePath, int segment, long offset, long size, long lastModifiedNanos) {
+            this(relativePath, segment, offset, size, lastModifiedNanos, -1, -1);
+        }
+
+        Entry(String relativePath, int segment, long offset, long size, long lastModifiedNanos,
+              long memberOffset, long memberStart) {
+            this.relativePath = relativePath;
+            this.segment = segment;
+            this.offset = offset;
+            this.size = size;
+            this.lastModifiedNanos = lastModifiedNanos;
+            this.memberOffset = memberOffset;
+            this.memberStart = memberStart;
+        }
+    }
+
+    static class Summary {
+        final int files;
+        final long bytes;
+        final int segments;
+        final int errors;
+
+        Summary(int files, long bytes, int segments, int errors) {
+            this.files = files;
+            this.bytes = bytes;
+            this.segments = segments;
+            this.errors = errors;
+        }
+    }
+
+    private static class SegmentOutput implements Closeable {
+        private final OutputStream fileOut;
+        private final boolean compress;
+        private final IoThrottle throttle = FileCopier.throttle();
+        private OutputStream out;
+        private long position;
+        private long fileBytes;
+        long dataBytes;
+        long memberOffset = -1;
+        long memberStart = -1;
+
+        SegmentOutput(Path file, boolean compress) throws IOException {
+            this.compress = compress;
+            this.fileOut = new FilterOutputStream(new BufferedOutputStream(Files.newOutputStream(file), STREAM_BUFFER)) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    fileBytes++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    fileBytes += len;
+                }
+            };
+            this.out = compress ? startMember() : fileOut;
+        }
+
+        private OutputStream startMember() throws IOException {
+            memberOffset = fileBytes;
+            memberStart = position;
+            return new GZIPOutputStream(fileOut, STREAM_BUFFER) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            };
+        }
+
+        long writeHeader(String name, long size, long lastModifiedNanos) throws IOException {
+            if (compress && position - memberStart >= MEMBER_SIZE) {
+                ((GZIPOutputStream) out).finish();
+                out = startMember();
+            }
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            long mtimeSeconds = TimeUnit.NANOSECONDS.toSeconds(lastModifiedNanos);
+            int split = splitPoint(nameBytes);
+            if (split < 0) {
+                byte[] longName = Arrays.copyOf(nameBytes, nameBytes.length + 1);
+                writeRaw(header(LONG_LINK_NAME, 0, LONG_LINK_NAME.length, longName.length, 0, (byte) 'L'));
+                writeRaw(longName);
+                pad(longName.length);
+                writeRaw(header(nameBytes, 0, Math.min(100, nameBytes.length), size, mtimeSeconds, (byte) '0'));
+            } else {
+                writeRaw(header(nameBytes, split, nameBytes.length - split, size, mtimeSeconds, (byte) '0'));
+            }
+            return position;
+        }
+
+        void writeData(byte[] data, int length) throws IOException {
+            throttle.acquireBytes(length);
+            writeRaw(data, length);
+            dataBytes += length;
+        }
+
+        void pad(long size) throws IOException {
+            int remainder = (int) (size % BLOCK);
+            if (remainder != 0) {
+                writeRaw(new byte[BLOCK - remainder]);
+            }
+        }
+
+        private void writeRaw(byte[] data) throws IOException {
+            writeRaw(data, data.length);
+        }
+
+        private void writeRaw(byte[] data, int length) throws IOException {
+            out.write(data, 0, length);
+            position += length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                writeRaw(new byte[BLOCK * 2]);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    private final Path packDir;
+    private final boolean compressed;
+    private final List<String> segments;
+    private final List<Entry> entries;
+    private final Map<String, Entry> byPath = new HashMap<>();
+
+    private PackArchive(Path packDir, boolean compressed, List<String> segments, List<Entry> entries) {
+        this.packDir = packDir;
+        this.compressed = compressed;
+        this.segments = segments;
+        this.entries = entries;
+        for (Entry entry : entries) {
+            byPath.put(entry.relativePath, entry);
+        }
+    }
+
+    List<Entry> getEntries() {
+        return entries;
+    }
+
+    List<String> getSegments() {
+        return segments;
+    }
+
+    Entry find(String relativePath) {
+        return byPath.get(relativePath);
+    }
+
+    static Summary pack(Map<String, ScanEntry> files, Path packDir, long segmentSize, boolean compress,
+                        int readThreads, Logger logger) throws IOException {
+        Files.createDirectories(packDir);
+        int generation = nextGeneration(packDir);
+        List<String> paths = new ArrayList<>(files.keySet());
+        paths.sort(SortedTreeWalker.PATH_ORDER);
+        IoThrottle throttle = FileCopier.throttle();
+        List<String> segments = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>(paths.size());
+        int errors = 0;
+        long bytes = 0;
+        byte[] buffer = new byte[STREAM_BUFFER];
+        List<Future<byte[]>> prefetched = new ArrayList<>(Collections.nCopies(paths.size(), null));
+        int nextPrefetch = 0;
+        ExecutorService readers = Executors.newFixedThreadPool(Math.max(1, readThreads));
+        SegmentOutput out = null;
+        boolean complete = false;
+        try {
+            for (int i = 0; i < paths.size(); i++) {
+                for (; nextPrefetch < paths.size() && nextPrefetch < i + PREFETCH_WINDOW; nextPrefetch++) {
+                    ScanEntry next = files.get(paths.get(nextPrefetch));
+                    if (next.size <= PREFETCH_LIMIT) {
+                        prefetched.set(nextPrefetch, readers.submit(() -> {
+                            throttle.acquireFiles(1);
+                            return Files.readAllBytes(next.path);
+                        }));
+                    }
+                }
+                String relativePath = paths.get(i);
+                ScanEntry entry = files.get(relativePath);
+                Future<byte[]> future = prefetched.set(i, null);
+                byte[] content = null;
+                InputStream stream = null;
+                try {
+                    if (future != null) {
+                        content = future.get();
+                    } else {
+                        throttle.acquireFiles(1);
+                        stream = Files.newInputStream(entry.path);
+                    }
+                } catch (ExecutionException | IOException e) {
+                    errors++;
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    logger.warning("Не удалось прочитать файл для упаковки: " + entry.path + " Ошибка: " + cause.getMessage());
+                    continue;
+                }
+                long size = content != null ? content.length : entry.size;
+                if (out == null || (out.dataBytes > 0 && out.dataBytes + size > segmentSize)) {
+                    if (out != null) {
+                        out.close();
+                    }
+                    String segmentName = segmentName(generation, segments.size() + 1, compress);
+                    out = new SegmentOutput(packDir.resolve(segmentName), compress);
+                    segments.add(segmentName);
+                }
+                long offset = out.writeHeader(relativePath, size, entry.lastModifiedNanos);
+                long memberOffset = out.memberOffset;
+                long memberStart = out.memberStart;
+                if (content != null) {
+                    out.writeData(content, content.length);
+                } else {
+                    long written = 0;
+                    boolean grew = false;
+                    try (InputStream in = stream) {
+                        int read;
+                        while (written < size && (read = in.read(buffer, 0, (int) Math.min(buffer.length, size - written))) > 0) {
+                            out.writeData(buffer, read);
+                            written += read;
+                        }
+                        grew = written == size && in.read() >= 0;
+                    } catch (IOException e) {
+                        logger.warning("Ошибка чтения при упаковке: " + entry.path + " Ошибка: " + e.getMessage());
+                    }
+                    if (written < size || grew) {
+                        errors++;
+                        logger.warning("Файл изменился во время упаковки и не включен в индекс: " + entry.path);
+                        while (written < size) {
+                            int length = (int) Math.min(buffer.length, size - written);
+                            Arrays.fill(buffer, 0, length, (byte) 0);
+                            out.writeData(buffer, length);
+                            written += length;
+                        }
+                        out.pad(size);
+                        continue;
+                    }
+                }
+                out.pad(size);
+                entries.add(new Entry(relativePath, segments.size(), offset, size, entry.lastModifiedNanos, memberOffset, memberStart));
+                bytes += size;
+            }
+            if (out != null) {
+                SegmentOutput last = out;
+                out = null;
+                last.close();
+            }
+            new PackArchive(packDir, compress, segments, entries).saveIndex();
+            complete = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Упаковка прервана");
+        } finally {
+            readers.shutdownNow();
+            try {
+                if (out != null) {
+                    out.close();
+                }
+            } finally {
+                if (!complete) {
+                    removeSegments(packDir, segments, logger);
+                }
+            }
+        }
+        List<Path> stale = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(packDir, SEGMENT_PREFIX + "*.tar*")) {
+            for (Path segment : stream) {
+                if (!segments.contains(segment.getFileName().toString())) {
+                    stale.add(segment);
+                }
+            }
+        }
+        for (Path segment : stale) {
+            Files.deleteIfExists(segment);
+        }
+        return new Summary(entries.size(), bytes, segments.size(), errors);
+    }
+
+    private static void removeSegments(Path packDir, List<String> segments, Logger logger) {
+        for (String segment : segments) {
+            try {
+                Files.deleteIfExists(packDir.resolve(segment));
+            } catch (IOException e) {
+                logger.warning("Не удалось удалить незавершенный сегмент: " + segment + " Ошибка: " + e.getMessage());
+            }
+        }
+    }
+
+    private static int nextGeneration(Path packDir) throws IOException {
+        int generation = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(packDir, SEGMENT_PREFIX + "*.tar*")) {
+            for (Path segment : stream) {
+                String name = segment.getFileName().toString();
+                int dash = name.indexOf('-', SEGMENT_PREFIX.length());
+                if (dash > SEGMENT_PREFIX.length()) {
+                    try {
+                        generation = Math.max(generation, Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), dash)));
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+        }
+        return generation + 1;
+    }
+
+    private static String segmentName(int generation, int number, boolean compress) {
+        return String.format(Locale.ROOT, "%s%d-%05d.tar%s", SEGMENT_PREFIX, generation, number, compress ? ".gz" : "");
+    }
+
+    private static int splitPoint(byte[] name) {
+        if (name.length <= 100) {
+            return 0;
+        }
+        for (int i = name.length - 1; i > 0; i--) {
+            if (name[i] == '/' && i <= 155 && name.length - i - 1 <= 100) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] header(byte[] path, int nameStart, int nameLength, long size, long mtimeSeconds, byte type) {
+        byte[] block = new byte[BLOCK];
+        System.arraycopy(path, nameStart, block, 0, nameLength);
+        if (nameStart > 0) {
+            System.arraycopy(path, 0, block, 345, nameStart - 1);
+        }
+        octal(block, 100, 8, 0644);
+        octal(block, 108, 8, 0);
+        octal(block, 116, 8, 0);
+        if (size <= MAX_OCTAL_SIZE) {
+            octal(block, 124, 12, size);
+        } else {
+            block[124] = (byte) 0x80;
+            for (int i = 135; i > 124; i--, size >>>= 8) {
+                block[i] = (byte) size;
+            }
+        }
+        octal(block, 136, 12, Math.max(0, mtimeSeconds));
+        block[156] = type;
+        System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, block, 257, 8);
+        Arrays.fill(block, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : block) {
+            checksum += b & 0xFF;
+        }
+        octal(block, 148, 7, checksum);
+        return block;
+    }
+
+    private static void octal(byte[] block, int offset, int length, long value) {
+        String digits = Long.toOctalString(value);
+        int width = length - 1;
+        for (int i = 0; i < width; i++) {
+            int digit = i - (width - digits.length());
+            block[offset + i] = (byte) (digit < 0 ? '0' : digits.charAt(digit));
+        }
+        block[offset + width] = 0;
+    }
+
+    void saveIndex() throws IOException {
+        Path file = packDir.resolve(INDEX_FILE);
+        Path tempFile = file.resolveSibling(INDEX_FILE + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            out.write(HEADER + "\n");
+            out.write("compressed\t" + compressed + "\n");
+            for (int i = 0; i < segments.size(); i++) {
+                out.write("segment\t" + (i + 1) + "\t" + segments.get(i) + "\n");
+            }
+            for (Entry entry : entries) {
+                out.write("file\t" + SyncPlan.escape(entry.relativePath) + "\t" + entry.segment + "\t" + entry.offset
+                        + "\t" + entry.size + "\t" + entry.lastModifiedNanos + "\t" + entry.memberOffset
+                        + "\t" + entry.memberStart + "\n");
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static PackArchive open(Path packDir) throws IOException {
+        Path file = packDir.resolve(INDEX_FILE);
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+            if (!HEADER.equals(header) && !HEADER_V1.equals(header)) {
+                throw new IOException("Неподдерживаемый формат индекса архива: " + file);
+            }
+            boolean compressed = false;
+            List<String> segments = new ArrayList<>();
+            List<Entry> entries = new ArrayList<>();
+            String line;
+            int lineNumber = 1;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                String[] fields = line.split("\t", -1);
+                try {
+                    switch (fields[0]) {
+                        case "compressed": compressed = Boolean.parseBoolean(fields[1]); break;
+                        case "segment": segments.add(fields[2]); break;
+                        case "file":
+                            entries.add(new Entry(SyncPlan.unescape(fields[1]), Integer.parseInt(fields[2]),
+                                    Long.parseLong(fields[3]), Long.parseLong(fields[4]), Long.parseLong(fields[5]),
+                                    fields.length > 7 ? Long.parseLong(fields[6]) : -1,
+                                    fields.length > 7 ? Long.parseLong(fields[7]) : -1));
+                            break;
+                        default: break;
+                    }
+                } catch (RuntimeException e) {
+                    throw new IOException("Ошибка в строке " + lineNumber + " индекса " + file + ": " + e.getMessage(), e);
+                }
+            }
+            return new PackArchive(packDir, compressed, segments, entries);
+        }
+    }
+
+    private InputStream openSegment(int segment) throws IOException {
+        InputStream fileIn = Files.newInputStream(packDir.resolve(segments.get(segment - 1)));
+        return compressed ? new GZIPInputStream(fileIn, STREAM_BUFFER) : new BufferedInputStream(fileIn, STREAM_BUFFER);
+    }
+
+    private InputStream openMember(Entry entry) throws IOException {
+        if (entry.memberOffset < 0) {
+            return openSegment(entry.segment);
+        }
+        FileChannel channel = FileChannel.open(packDir.resolve(segments.get(entry.segment - 1)), StandardOpenOption.READ);
+        try {
+            channel.position(entry.memberOffset);
+            return new GZIPInputStream(new BufferedInputStream(Channels.newInputStream(channel), STREAM_BUFFER), STREAM_BUFFER);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    Summary unpack(Path targetRoot, int threads, Logger logger) throws IOException {
+        Files.createDirectories(targetRoot);
+        Path root = targetRoot.toAbsolutePath().normalize();
+        Set<Path> createdDirs = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, segments.size())));
+        int files = 0;
+        long bytes = 0;
+        int errors = 0;
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int i = 1; i <= segments.size(); i++) {
+                int segment = i;
+                futures.add(executor.submit(() -> unpackSegment(segment, root, createdDirs, logger)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    long[] counts = futures.get(i).get();
+                    files += counts[0];
+                    bytes += counts[1];
+                    errors += counts[2];
+                } catch (ExecutionException e) {
+                    errors++;
+                    logger.severe("Ошибка распаковки сегмента " + segments.get(i) + ": " + e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Распаковка прервана");
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Summary(files, bytes, segments.size(), errors);
+    }
+
+    private long[] unpackSegment(int segment, Path root, Set<Path> createdDirs, Logger logger) throws IOException {
+        IoThrottle throttle = FileCopier.throttle();
+        long[] counts = new long[3];
+        byte[] block = new byte[BLOCK];
+        byte[] buffer = new byte[STREAM_BUFFER];
+        try (InputStream in = openSegment(segment)) {
+            String longName = null;
+            while (readBlock(in, block)) {
+                if (isZero(block)) {
+                    break;
+                }
+                long size = parseSize(block);
+                byte type = block[156];
+                if (type == 'L') {
+                    byte[] name = in.readNBytes((int) size);
+                    skipFully(in, padding(size));
+                    int end = 0;
+                    while (end < name.length && name[end] != 0) {
+                        end++;
+                    }
+                    longName = new String(name, 0, end, StandardCharsets.UTF_8);
+                    continue;
+                }
+                String name = longName != null ? longName : headerName(block);
+                longName = null;
+                Path target = root.resolve(name).normalize();
+                if (!target.startsWith(root) || target.equals(root)) {
+                    logger.warning("Пропущен элемент архива вне каталога назначения: " + name);
+                    skipFully(in, size + padding(size));
+                    continue;
+                }
+                if (type == '5') {
+                    Files.createDirectories(target);
+                    continue;
+                }
+                if (type != '0' && type != 0) {
+                    skipFully(in, size + padding(size));
+                    continue;
+                }
+                Entry entry = byPath.get(name);
+                if (entry == null) {
+                    logger.warning("Пропущен элемент архива, отсутствующий в индексе: " + name);
+                    skipFully(in, size + padding(size));
+                    continue;
+                }
+                Path parent = target.getParent();
+                if (createdDirs.add(parent)) {
+                    Files.createDirectories(parent);
+                }
+                throttle.acquireFiles(1);
+                long remaining = size;
+                try (OutputStream out = Files.newOutputStream(target)) {
+                    while (remaining > 0) {
+                        int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                        if (read < 0) {
+                            throw new EOFException("Архив обрезан на файле " + name);
+                        }
+                        throttle.acquireBytes(read);
+                        out.write(buffer, 0, read);
+                        remaining -= read;
+                    }
+                } catch (EOFException e) {
+                    throw e;
+                } catch (IOException e) {
+                    counts[2]++;
+                    logger.warning("Ошибка записи при распаковке: " + target + " Ошибка: " + e.getMessage());
+                    skipFully(in, remaining + padding(size));
+                    continue;
+                }
+                skipFully(in, padding(size));
+                try {
+                    Files.setLastModifiedTime(target, FileTime.from(entry.lastModifiedNanos, TimeUnit.NANOSECONDS));
+                } catch (IOException e) {
+                    logger.finer("Не удалось установить время изменения для: " + target + " - " + e.getMessage());
+                }
+                counts[0]++;
+                counts[1] += size;
+            }
+        }
+        return counts;
+    }
+
+    void extract(Entry entry, Path target) throws IOException {
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileCopier.throttle().acquireFiles(1);
+        if (!compressed) {
+            try (FileChannel in = FileChannel.open(packDir.resolve(segments.get(entry.segment - 1)), StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE,
+                         StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long position = 0;
+                while (position < entry.size) {
+                    long transferred = in.transferTo(entry.offset + position, entry.size - position, out);
+                    if (transferred <= 0) {
+                        throw new EOFException("Архив обрезан на файле " + entry.relativePath);
+                    }
+                    position += transferred;
+                }
+            }
+        } else {
+            try (InputStream in = openMember(entry);
+                 OutputStream out = Files.newOutputStream(target)) {
+                skipFully(in, entry.memberOffset >= 0 ? entry.offset - entry.memberStart : entry.offset);
+                byte[] buffer = new byte[STREAM_BUFFER];
+                long remaining = entry.size;
+                while (remaining > 0) {
+                    int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read < 0) {
+                        throw new EOFException("Архив обрезан на файле " + entry.relativePath);
+                    }
+                    out.write(buffer, 0, read);
+                    remaining -= read;
+                }
+            }
+        }
+        Files.setLastModifiedTime(target, FileTime.from(entry.lastModifiedNanos, TimeUnit.NANOSECONDS));
+    }
+
+    private static boolean readBlock(InputStream in, byte[] block) throws IOException {
+        int read = in.readNBytes(block, 0, BLOCK);
+        if (read == 0) {
+            return false;
+        }
+        if (read < BLOCK) {
+            throw new EOFException("Неполный заголовок в архиве");
+        }
+        return true;
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long padding(long size) {
+        return (BLOCK - size % BLOCK) % BLOCK;
+    }
+
+    private static void skipFully(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Архив обрезан");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    private static String headerName(byte[] block) {
+        String name = cString(block, 0, 100);
+        String prefix = block[257] == 'u' ? cString(block, 345, 155) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private static String cString(byte[] block, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && block[end] != 0) {
+            end++;
+        }
+        return new String(block, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static long parseSize(byte[] block) {
+        if ((block[124] & 0x80) != 0) {
+            long size = 0;
+            for (int i = 125; i < 136; i++) {
+                size = (size << 8) | (block[i] & 0xFF);
+            }
+            return size;
+        }
+        return parseOctal(block, 124, 12);
+    }
+
+    private static long parseOctal(byte[] block, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = block[i];
+            if (b >= '0' && b <= '7') {
+                value = value * 8 + (b - '0');
+            } else if (b == 0 || (b == ' ' && value > 0)) {
+                break;
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,202 @@
+package komissia;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+public class ParallelDirectoryScanner implements AutoCloseable {
+
+    private final ForkJoinPool pool;
+    private final Logger logger;
+    private final SyncMetrics metrics;
+    private final PathFilter filter;
+    private final IoThrottle throttle;
+    private final AtomicLong reusedDirs = new AtomicLong();
+    private final AtomicLong rescannedDirs = new AtomicLong();
+    private List<ScanSnapshot> lastSnapshots = List.of();
+
+    public ParallelDirectoryScanner(int parallelism, Logger logger) {
+        this(parallelism, logger, new SyncMetrics());
+    }
+
+    public ParallelDirectoryScanner(int parallelism, Logger logger, SyncMetrics metrics) {
+        this(parallelism, logger, metrics, PathFilter.NONE);
+    }
+
+    public ParallelDirectoryScanner(int parallelism, Logger logger, SyncMetrics metrics, PathFilter filter) {
+        this(parallelism, logger, metrics, filter, IoThrottle.UNLIMITED);
+    }
+
+    public ParallelDirectoryScanner(int parallelism, Logger logger, SyncMetrics metrics, PathFilter filter, IoThrottle throttle) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.logger = logger;
+        this.metrics = metrics;
+        this.filter = filter;
+        this.throttle = throttle;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public long getReusedDirs() {
+        return reusedDirs.get();
+    }
+
+    public long getRescannedDirs() {
+        return rescannedDirs.get();
+    }
+
+    public List<ScanSnapshot> getLastSnapshots() {
+        return lastSnapshots;
+    }
+
+    public Map<String, ScanEntry> scan(Path rootDir) {
+        return scanAll(List.of(rootDir)).get(0);
+    }
+
+    public List<Map<String, ScanEntry>> scanAll(List<Path> roots) {
+        List<ScanSnapshot> previous = new ArrayList<>();
+        for (int i = 0; i < roots.size(); i++) {
+            previous.add(null);
+        }
+        return scanAll(roots, previous);
+    }
+
+    public List<Map<String, ScanEntry>> scanAll(List<Path> roots, List<ScanSnapshot> previousSnapshots) {
+        long startedNanos = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+        List<ConcurrentHashMap<String, ScanEntry>> results = new ArrayList<>();
+        List<ScanSnapshot.Recorder> recorders = new ArrayList<>();
+        List<ForkJoinTask<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < roots.size(); i++) {
+            Path root = roots.get(i);
+            ConcurrentHashMap<String, ScanEntry> filesMap = new ConcurrentHashMap<>();
+            ScanSnapshot.Recorder recorder = new ScanSnapshot.Recorder();
+            results.add(filesMap);
+            recorders.add(recorder);
+            long rootMtime = -1;
+            try {
+                rootMtime = Files.getLastModifiedTime(root).to(TimeUnit.NANOSECONDS);
+            } catch (IOException e) {
+                metrics.recordError(SyncMetrics.STAGE_SCAN, e);
+                logger.warning("Ошибка доступа к файлу/каталогу: " + root + " Ошибка: " + e.getMessage());
+            }
+            tasks.add(pool.submit(new DirectoryTask(root, "", rootMtime, filesMap, previousSnapshots.get(i), recorder)));
+        }
+        for (ForkJoinTask<Void> task : tasks) {
+            task.join();
+        }
+
+        List<Map<String, ScanEntry>> maps = new ArrayList<>();
+        List<ScanSnapshot> snapshots = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            Map<String, ScanEntry> map = new HashMap<>(results.get(i));
+            maps.add(map);
+            ScanSnapshot.Recorder recorder = recorders.get(i);
+            snapshots.add(ScanSnapshot.build(startedNanos, recorder.dirMtimes, recorder.subdirs, map));
+        }
+        lastSnapshots = snapshots;
+        return maps;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Path dir;
+        private final String relativeDir;
+        private final long lastModifiedNanos;
+        private final Map<String, ScanEntry> filesMap;
+        private final ScanSnapshot previous;
+        private final ScanSnapshot.Recorder recorder;
+
+        DirectoryTask(Path dir, String relativeDir, long lastModifiedNanos, Map<String, ScanEntry> filesMap,
+                      ScanSnapshot previous, ScanSnapshot.Recorder recorder) {
+            this.dir = dir;
+            this.relativeDir = relativeDir;
+            this.lastModifiedNanos = lastModifiedNanos;
+            this.filesMap = filesMap;
+            this.previous = previous;
+            this.recorder = recorder;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subTasks = new ArrayList<>();
+            List<String> subdirNames = new ArrayList<>();
+            ScanSnapshot.DirRecord cached = previous != null ? previous.reusable(relativeDir, lastModifiedNanos) : null;
+            metrics.dirsScanned.increment();
+            if (cached != null) {
+                reusedDirs.incrementAndGet();
+                metrics.filesScanned.add(cached.files.size());
+                for (ScanSnapshot.FileRecord file : cached.files.values()) {
+                    String relativePath = relativePathOf(file.name);
+                    if (!filter.excludesFile(relativePath, file.name)) {
+                        filesMap.put(relativePath,
+                                new ScanEntry(dir.resolve(file.name), file.size, file.lastModifiedNanos, file.fileKey));
+                    }
+                }
+                for (String name : cached.subdirs) {
+                    visitEntry(dir.resolve(name), name, subTasks, subdirNames);
+                }
+            } else {
+                rescannedDirs.incrementAndGet();
+                throttle.acquireFiles(1);
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                    for (Path entry : stream) {
+                        visitEntry(entry, entry.getFileName().toString(), subTasks, subdirNames);
+                    }
+                } catch (IOException | DirectoryIteratorException e) {
+                    metrics.recordError(SyncMetrics.STAGE_SCAN, e);
+                    logger.warning("Ошибка доступа к файлу/каталогу: " + dir + " Ошибка: " + e.getMessage());
+                    invokeAll(subTasks);
+                    return;
+                }
+            }
+            recorder.record(relativeDir, lastModifiedNanos, subdirNames);
+            invokeAll(subTasks);
+        }
+
+        private void visitEntry(Path entry, String name, List<DirectoryTask> subTasks, List<String> subdirNames) {
+            String relativePath = relativePathOf(name);
+            BasicFileAttributes attrs;
+            throttle.acquireFiles(1);
+            try {
+                attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                metrics.recordError(SyncMetrics.STAGE_SCAN, e);
+                logger.warning("Ошибка доступа к файлу/каталогу: " + entry + " Ошибка: " + e.getMessage());
+                return;
+            }
+            if (attrs.isDirectory()) {
+                if (filter.excludesDirectory(relativePath, name)) {
+                    return;
+                }
+                subdirNames.add(name);
+                subTasks.add(new DirectoryTask(entry, relativePath, attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                        filesMap, previous, recorder));
+            } else if (!filter.excludesFile(relativePath, name)) {
+                metrics.filesScanned.increment();
+                filesMap.put(relativePath, ScanEntry.of(entry, attrs));
+            }
+        }
+
+        private String relativePathOf(String name) {
+            return relativeDir.isEmpty() ? name : relativeDir + "/" + name;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package komissia;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+public class PathFilter {
+
+    static final String IGNORE_FILE = ".syncignore";
+    static final String REGEX_PREFIX = "re:";
+    static final List<String> BUILT_IN_RULES = List.of("*.komissia-tmp");
+    static final PathFilter NONE = compile(BUILT_IN_RULES);
+
+    private static class Rule {
+        final String source;
+        final boolean include;
+        final boolean directoryOnly;
+        final boolean matchName;
+        final String literal;
+        final Pattern pattern;
+
+        Rule(String source, boolean include, boolean directoryOnly, boolean matchName, String literal, Pattern pattern) {
+            this.source = source;
+            this.include = include;
+            this.directoryOnly = directoryOnly;
+            this.matchName = matchName;
+            this.literal = literal;
+            this.pattern = pattern;
+        }
+
+        boolean matches(String relativePath, String name) {
+            String subject = matchName ? name : relativePath;
+            return literal != null ? literal.equals(subject) : pattern.matcher(subject).matches();
+        }
+    }
+
+    private final Rule[] rules;
+
+    private PathFilter(List<Rule> rules) {
+        this.rules = rules.toArray(new Rule[0]);
+    }
+
+    static PathFilter compile(List<String> lines) {
+        List<Rule> rules = new ArrayList<>();
+        for (String line : lines) {
+            Rule rule = parse(line);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return new PathFilter(rules);
+    }
+
+    static PathFilter forRoots(List<Path> roots, List<Path> ignoreFiles, List<String> extraRules) throws IOException {
+        return compile(collectRules(roots, ignoreFiles, extraRules));
+    }
+
+    static List<String> collectRules(List<Path> roots, List<Path> ignoreFiles, List<String> extraRules) throws IOException {
+        List<String> lines = new ArrayList<>(BUILT_IN_RULES);
+        Set<Path> files = new LinkedHashSet<>();
+        for (Path root : roots) {
+            if (root != null) {
+                files.add(root.resolve(IGNORE_FILE));
+            }
+        }
+        files.addAll(ignoreFiles);
+        for (Path file : files) {
+            if (Files.isRegularFile(file)) {
+                lines.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+            }
+        }
+        lines.addAll(extraRules);
+        return lines;
+    }
+
+    private static Rule parse(String line) {
+        String text = line.strip();
+        if (text.isEmpty() || text.startsWith("#")) {
+            return null;
+        }
+        boolean include = text.startsWith("!");
+        if (include) {
+            text = text.substring(1);
+        }
+        boolean directoryOnly = text.endsWith("/");
+        if (directoryOnly) {
+            text = text.substring(0, text.length() - 1);
+        }
+        if (text.startsWith(REGEX_PREFIX)) {
+            String regex = text.substring(REGEX_PREFIX.length());
+            try {
+                return new Rule(line, include, directoryOnly, false, null, Pattern.compile(regex));
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Неверное регулярное выражение в правиле фильтра: " + line, e);
+            }
+        }
+        boolean matchName = text.indexOf('/') < 0;
+        if (text.startsWith("/")) {
+            text = text.substring(1);
+        }
+        if (text.isEmpty()) {
+            return null;
+        }
+        if (!text.contains("*") && !text.contains("?") && !text.contains("[")) {
+            return new Rule(line, include, directoryOnly, matchName, text, null);
+        }
+        return new Rule(line, include, directoryOnly, matchName, null, Pattern.compile(globToRegex(text)));
+    }
+
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() * 2);
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    i++;
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '/') {
+                        i++;
+                        regex.append("(?:.*/)?");
+                    } else {
+                        regex.append(".*");
+                    }
+                } else {
+                    regex.append("[^/]*");
+                }
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else if (c == '[') {
+                int end = glob.indexOf(']', i + 1);
+                if (end < 0) {
+                    regex.append("\\[");
+                } else {
+                    String set = glob.substring(i + 1, end);
+                    regex.append('[').append(set.startsWith("!") ? "^" + set.substring(1) : set).append(']');
+                    i = end;
+                }
+            } else if ("\\.^$+(){}|".indexOf(c) >= 0) {
+                regex.append('\\').append(c);
+            } else {
+                regex.append(c);
+            }
+        }
+        return regex.toString();
+    }
+
+    boolean excludesDirectory(String relativePath, String name) {
+        return evaluate(relativePath, name, true);
+    }
+
+    boolean excludesFile(String relativePath, String name) {
+        return evaluate(relativePath, name, false);
+    }
+
+    boolean excludes(String relativePath, boolean directory) {
+        int start = 0;
+        while (true) {
+            int slash = relativePath.indexOf('/', start);
+            if (slash < 0) {
+                return evaluate(relativePath, relativePath.substring(start), directory);
+            }
+            if (excludesDirectory(relativePath.substring(0, slash), relativePath.substring(start, slash))) {
+                return true;
+            }
+            start = slash + 1;
+        }
+    }
+
+    private boolean evaluate(String relativePath, String name, boolean directory) {
+        for (int i = rules.length - 1; i >= 0; i--) {
+            Rule rule = rules[i];
+            if ((!rule.directoryOnly || directory) && rule.matches(relativePath, name)) {
+                return !rule.include;
+            }
+        }
+        return false;
+    }
+
+    String fingerprint() {
+        StringBuilder text = new StringBuilder();
+        for (Rule rule : rules) {
+            text.append(rule.source).append('\n');
+        }
+        return UUID.nameUUIDFromBytes(text.toString().getBytes(StandardCharsets.UTF_8)).toString().substring(0, 8);
+    }
+
+    @Override
+    public String toString() {
+        return "правил: " + rules.length;
+    }
+}
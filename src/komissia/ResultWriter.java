@@ -0,0 +1,126 @@
+package komissia;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+
+public class ResultWriter implements Closeable {
+
+    enum Format {
+        JSONL, CSV;
+
+        static Format parse(String value) {
+            return Format.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final Format format;
+    private final Writer out;
+    private final boolean ownsStream;
+    private boolean headerWritten = false;
+
+    private ResultWriter(Format format, Writer out, boolean ownsStream) {
+        this.format = format;
+        this.out = out;
+        this.ownsStream = ownsStream;
+    }
+
+    static ResultWriter open(Format format, Path output) throws IOException {
+        if (output == null) {
+            return new ResultWriter(format, new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16), false);
+        }
+        Path parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return new ResultWriter(format, Files.newBufferedWriter(output, StandardCharsets.UTF_8), true);
+    }
+
+    synchronized void write(Map<String, ?> record) throws IOException {
+        if (format == Format.JSONL) {
+            writeJson(record);
+        } else {
+            writeCsv(record);
+        }
+    }
+
+    private void writeJson(Map<String, ?> record) throws IOException {
+        StringBuilder line = new StringBuilder(128).append('{');
+        boolean first = true;
+        for (Map.Entry<String, ?> field : record.entrySet()) {
+            if (!first) {
+                line.append(',');
+            }
+            first = false;
+            appendJsonString(line, field.getKey());
+            line.append(':');
+            Object value = field.getValue();
+            if (value == null) {
+                line.append("null");
+            } else if (value instanceof Number || value instanceof Boolean) {
+                line.append(value);
+            } else {
+                appendJsonString(line, value.toString());
+            }
+        }
+        out.write(line.append('}').append('\n').toString());
+    }
+
+    private static void appendJsonString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private void writeCsv(Map<String, ?> record) throws IOException {
+        StringBuilder line = new StringBuilder(128);
+        if (!headerWritten) {
+            for (String key : record.keySet()) {
+                appendCsvValue(line, key);
+            }
+            line.setCharAt(line.length() - 1, '\n');
+            headerWritten = true;
+        }
+        for (Object value : record.values()) {
+            appendCsvValue(line, value == null ? "" : value.toString());
+        }
+        line.setCharAt(line.length() - 1, '\n');
+        out.write(line.toString());
+    }
+
+    private static void appendCsvValue(StringBuilder sb, String value) {
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+        } else {
+            sb.append(value);
+        }
+        sb.append(',');
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (ownsStream) {
+            out.close();
+        } else {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package komissia;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+public final class ScanEntry {
+
+    final Path path;
+    final long size;
+    final long lastModifiedNanos;
+    final Object fileKey;
+
+    ScanEntry(Path path, long size, long lastModifiedNanos, Object fileKey) {
+        this.path = path;
+        this.size = size;
+        this.lastModifiedNanos = lastModifiedNanos;
+        this.fileKey = fileKey;
+    }
+
+    static ScanEntry of(Path path, BasicFileAttributes attrs) {
+        return new ScanEntry(path, attrs.size(), attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS), attrs.fileKey());
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    FileTime getLastModifiedTime() {
+        return FileTime.from(lastModifiedNanos, TimeUnit.NANOSECONDS);
+    }
+}
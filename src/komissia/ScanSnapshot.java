@@ -0,0 +1,275 @@
+package komissia;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class ScanSnapshot {
+
+    private static final int MAGIC = 0x4B534E50;
+    private static final int FORMAT_VERSION = 1;
+    private static final long MTIME_GUARD_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final int MAX_STRING_BYTES = 1 << 16;
+
+    static class FileRecord {
+        final String name;
+        final long size;
+        final long lastModifiedNanos;
+        final String fileKey;
+
+        FileRecord(String name, long size, long lastModifiedNanos, String fileKey) {
+            this.name = name;
+            this.size = size;
+            this.lastModifiedNanos = lastModifiedNanos;
+            this.fileKey = fileKey;
+        }
+    }
+
+    static class DirRecord {
+        final long lastModifiedNanos;
+        final Map<String, FileRecord> files;
+        final List<String> subdirs;
+
+        DirRecord(long lastModifiedNanos, Map<String, FileRecord> files, List<String> subdirs) {
+            this.lastModifiedNanos = lastModifiedNanos;
+            this.files = files;
+            this.subdirs = subdirs;
+        }
+    }
+
+    final long createdNanos;
+    final Map<String, DirRecord> dirs;
+
+    ScanSnapshot(long createdNanos, Map<String, DirRecord> dirs) {
+        this.createdNanos = createdNanos;
+        this.dirs = dirs;
+    }
+
+    static final String SCAN_SUFFIX = ".snap";
+    static final String SYNCED_SUFFIX = ".synced.snap";
+
+    static Path fileFor(Path snapshotDir, Path root) {
+        return fileFor(snapshotDir, root, SCAN_SUFFIX);
+    }
+
+    static Path fileFor(Path snapshotDir, Path root, String suffix) {
+        String rootKey = root.toAbsolutePath().normalize().toString();
+        return snapshotDir.resolve(UUID.nameUUIDFromBytes(rootKey.getBytes(StandardCharsets.UTF_8)) + suffix);
+    }
+
+    boolean contains(String relativePath) {
+        int slash = relativePath.lastIndexOf('/');
+        DirRecord record = dirs.get(slash < 0 ? "" : relativePath.substring(0, slash));
+        if (record == null) {
+            return false;
+        }
+        return record.files.containsKey(relativePath.substring(slash + 1));
+    }
+
+    DirRecord reusable(String relativeDir, long lastModifiedNanos) {
+        DirRecord record = dirs.get(relativeDir);
+        if (record == null || record.lastModifiedNanos != lastModifiedNanos) {
+            return null;
+        }
+        if (lastModifiedNanos >= createdNanos - MTIME_GUARD_NANOS) {
+            return null;
+        }
+        return record;
+    }
+
+    void update(Path root, Collection<String> relativePaths, Map<String, ScanEntry> files) {
+        TreeSet<String> changedDirs = new TreeSet<>(Comparator.comparingInt(ScanSnapshot::depth)
+                .thenComparing(Comparator.naturalOrder()));
+        for (String relativePath : relativePaths) {
+            String dir = parentOf(relativePath);
+            while (changedDirs.add(dir) && !dir.isEmpty()
+                    && (!dirs.containsKey(dir) || !Files.isDirectory(root.resolve(dir), LinkOption.NOFOLLOW_LINKS))) {
+                dir = parentOf(dir);
+            }
+        }
+        for (String dir : changedDirs) {
+            DirRecord record = dirs.get(dir);
+            BasicFileAttributes attrs = null;
+            try {
+                attrs = Files.readAttributes(root.resolve(dir), BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException ignored) {
+            }
+            if (attrs == null || !attrs.isDirectory()) {
+                if (record != null) {
+                    String prefix = dir + "/";
+                    dirs.keySet().removeIf(key -> key.equals(dir) || key.startsWith(prefix));
+                    linkSubdir(dir, false);
+                }
+                continue;
+            }
+            long lastModifiedNanos = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            dirs.put(dir, record != null
+                    ? new DirRecord(lastModifiedNanos, record.files, record.subdirs)
+                    : new DirRecord(lastModifiedNanos, new LinkedHashMap<>(), List.of()));
+            if (record == null) {
+                linkSubdir(dir, true);
+            }
+        }
+        for (String relativePath : relativePaths) {
+            DirRecord record = dirs.get(parentOf(relativePath));
+            if (record == null) {
+                continue;
+            }
+            String name = relativePath.substring(relativePath.lastIndexOf('/') + 1);
+            ScanEntry entry = files.get(relativePath);
+            if (entry != null) {
+                record.files.put(name, new FileRecord(name, entry.size, entry.lastModifiedNanos, ChecksumCache.fileKeyString(entry)));
+            } else {
+                record.files.remove(name);
+            }
+        }
+    }
+
+    private void linkSubdir(String relativeDir, boolean present) {
+        if (relativeDir.isEmpty()) {
+            return;
+        }
+        String parentDir = parentOf(relativeDir);
+        DirRecord parent = dirs.get(parentDir);
+        String name = relativeDir.substring(relativeDir.lastIndexOf('/') + 1);
+        if (parent == null || parent.subdirs.contains(name) == present) {
+            return;
+        }
+        List<String> subdirs = new ArrayList<>(parent.subdirs);
+        if (present) {
+            subdirs.add(name);
+        } else {
+            subdirs.remove(name);
+        }
+        dirs.put(parentDir, new DirRecord(parent.lastModifiedNanos, parent.files, subdirs));
+    }
+
+    private static String parentOf(String relativePath) {
+        int slash = relativePath.lastIndexOf('/');
+        return slash < 0 ? "" : relativePath.substring(0, slash);
+    }
+
+    private static int depth(String relativeDir) {
+        int depth = relativeDir.isEmpty() ? 0 : 1;
+        for (int i = 0; i < relativeDir.length(); i++) {
+            if (relativeDir.charAt(i) == '/') {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    static ScanSnapshot build(long createdNanos, Map<String, Long> dirMtimes, Map<String, List<String>> subdirs,
+                              Map<String, ScanEntry> files) {
+        Map<String, Map<String, FileRecord>> filesByDir = new HashMap<>();
+        for (Map.Entry<String, ScanEntry> e : files.entrySet()) {
+            String relativePath = e.getKey();
+            int slash = relativePath.lastIndexOf('/');
+            String dir = slash < 0 ? "" : relativePath.substring(0, slash);
+            ScanEntry entry = e.getValue();
+            String name = relativePath.substring(slash + 1);
+            filesByDir.computeIfAbsent(dir, k -> new LinkedHashMap<>()).put(name, new FileRecord(name,
+                    entry.size, entry.lastModifiedNanos, ChecksumCache.fileKeyString(entry)));
+        }
+        Map<String, DirRecord> dirs = new HashMap<>();
+        for (Map.Entry<String, Long> e : dirMtimes.entrySet()) {
+            dirs.put(e.getKey(), new DirRecord(e.getValue(),
+                    filesByDir.getOrDefault(e.getKey(), new LinkedHashMap<>()),
+                    subdirs.getOrDefault(e.getKey(), List.of())));
+        }
+        return new ScanSnapshot(createdNanos, dirs);
+    }
+
+    static ScanSnapshot load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Неподдерживаемый формат снимка: " + file);
+            }
+            long createdNanos = in.readLong();
+            int dirCount = in.readInt();
+            Map<String, DirRecord> dirs = new HashMap<>(dirCount * 2);
+            for (int i = 0; i < dirCount; i++) {
+                String relativeDir = readString(in);
+                long mtime = in.readLong();
+                int fileCount = in.readInt();
+                Map<String, FileRecord> files = new LinkedHashMap<>(fileCount * 2);
+                for (int f = 0; f < fileCount; f++) {
+                    FileRecord record = new FileRecord(readString(in), in.readLong(), in.readLong(), readString(in));
+                    files.put(record.name, record);
+                }
+                int subdirCount = in.readInt();
+                List<String> subdirs = new ArrayList<>(subdirCount);
+                for (int d = 0; d < subdirCount; d++) {
+                    subdirs.add(readString(in));
+                }
+                dirs.put(relativeDir, new DirRecord(mtime, files, subdirs));
+            }
+            return new ScanSnapshot(createdNanos, dirs);
+        } catch (EOFException | StreamCorruptedException | RuntimeException e) {
+            throw new IOException("Поврежденный снимок: " + file + " (" + e + ")", e);
+        }
+    }
+
+    void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(createdNanos);
+            out.writeInt(dirs.size());
+            for (Map.Entry<String, DirRecord> e : new TreeMap<>(dirs).entrySet()) {
+                DirRecord record = e.getValue();
+                writeString(out, e.getKey());
+                out.writeLong(record.lastModifiedNanos);
+                out.writeInt(record.files.size());
+                for (FileRecord f : record.files.values()) {
+                    writeString(out, f.name);
+                    out.writeLong(f.size);
+                    out.writeLong(f.lastModifiedNanos);
+                    writeString(out, f.fileKey);
+                }
+                out.writeInt(record.subdirs.size());
+                for (String subdir : record.subdirs) {
+                    writeString(out, subdir);
+                }
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new StreamCorruptedException("неверная длина строки: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static class Recorder {
+        final Map<String, Long> dirMtimes = new ConcurrentHashMap<>();
+        final Map<String, List<String>> subdirs = new ConcurrentHashMap<>();
+
+        void record(String relativeDir, long lastModifiedNanos, List<String> subdirNames) {
+            dirMtimes.put(relativeDir, lastModifiedNanos);
+            if (!subdirNames.isEmpty()) {
+                subdirs.put(relativeDir, subdirNames);
+            }
+        }
+    }
+}
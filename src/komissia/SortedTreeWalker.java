@@ -0,0 +1,127 @@
+package komissia;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.logging.Logger;
+
+public class SortedTreeWalker implements Iterator<Map.Entry<String, ScanEntry>> {
+
+    static final Comparator<String> PATH_ORDER = SortedTreeWalker::comparePaths;
+
+    private static class Frame {
+        final Path dir;
+        final String relativeDir;
+        final Iterator<String> names;
+
+        Frame(Path dir, String relativeDir, Iterator<String> names) {
+            this.dir = dir;
+            this.relativeDir = relativeDir;
+            this.names = names;
+        }
+    }
+
+    private final Logger logger;
+    private final SyncMetrics metrics;
+    private final PathFilter filter;
+    private final IoThrottle throttle;
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private Map.Entry<String, ScanEntry> next;
+
+    public SortedTreeWalker(Path root, Logger logger) {
+        this(root, logger, new SyncMetrics());
+    }
+
+    public SortedTreeWalker(Path root, Logger logger, SyncMetrics metrics) {
+        this(root, logger, metrics, PathFilter.NONE);
+    }
+
+    public SortedTreeWalker(Path root, Logger logger, SyncMetrics metrics, PathFilter filter) {
+        this(root, logger, metrics, filter, IoThrottle.UNLIMITED);
+    }
+
+    public SortedTreeWalker(Path root, Logger logger, SyncMetrics metrics, PathFilter filter, IoThrottle throttle) {
+        this.logger = logger;
+        this.metrics = metrics;
+        this.filter = filter;
+        this.throttle = throttle;
+        push(root, "");
+        advance();
+    }
+
+    static int comparePaths(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(i);
+            if (ca != cb) {
+                return (ca == '/' ? 0 : ca) - (cb == '/' ? 0 : cb);
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    private void push(Path dir, String relativeDir) {
+        List<String> names = new ArrayList<>();
+        throttle.acquireFiles(1);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                names.add(entry.getFileName().toString());
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            metrics.recordError(SyncMetrics.STAGE_SCAN, e);
+            logger.warning("Ошибка доступа к файлу/каталогу: " + dir + " Ошибка: " + e.getMessage());
+            return;
+        }
+        metrics.dirsScanned.increment();
+        names.sort(PATH_ORDER);
+        stack.push(new Frame(dir, relativeDir, names.iterator()));
+    }
+
+    private void advance() {
+        next = null;
+        while (next == null && !stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (!frame.names.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            String name = frame.names.next();
+            Path entry = frame.dir.resolve(name);
+            String relativePath = frame.relativeDir.isEmpty() ? name : frame.relativeDir + "/" + name;
+            BasicFileAttributes attrs;
+            throttle.acquireFiles(1);
+            try {
+                attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                metrics.recordError(SyncMetrics.STAGE_SCAN, e);
+                logger.warning("Ошибка доступа к файлу/каталогу: " + entry + " Ошибка: " + e.getMessage());
+                continue;
+            }
+            if (attrs.isDirectory()) {
+                if (!filter.excludesDirectory(relativePath, name)) {
+                    push(entry, relativePath);
+                }
+            } else if (!filter.excludesFile(relativePath, name)) {
+                metrics.filesScanned.increment();
+                next = new AbstractMap.SimpleImmutableEntry<>(relativePath, ScanEntry.of(entry, attrs));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Map.Entry<String, ScanEntry> next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        Map.Entry<String, ScanEntry> current = next;
+        advance();
+        return current;
+    }
+}
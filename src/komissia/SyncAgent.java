@@ -0,0 +1,414 @@
+package komissia;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+public class SyncAgent implements Closeable {
+
+    static final int MAGIC = 0x4B414754;
+    static final int PROTOCOL_VERSION = 1;
+    static final int DEFAULT_PORT = 7431;
+    static final int CHUNK_SIZE = 1 << 16;
+    static final int STREAM_BUFFER = 1 << 16;
+
+    static final byte LIST = 'L';
+    static final byte GET = 'G';
+    static final byte PUT = 'P';
+    static final byte MOVE = 'M';
+    static final byte DELETE = 'D';
+    static final byte HASH = 'H';
+    static final byte QUIT = 'Q';
+    static final byte STATUS_OK = 0;
+    static final byte STATUS_ERROR = 1;
+
+    private final Path root;
+    private final InetSocketAddress address;
+    private final String token;
+    private final int scanThreads;
+    private final Logger logger;
+    private final SyncMetrics metrics;
+    private final ExecutorService sessions = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "sync-agent-session");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ServerSocket serverSocket;
+
+    SyncAgent(Path root, InetSocketAddress address, String token, int scanThreads, Logger logger, SyncMetrics metrics) {
+        this.root = root.toAbsolutePath().normalize();
+        this.address = address;
+        this.token = token;
+        this.scanThreads = scanThreads;
+        this.logger = logger;
+        this.metrics = metrics;
+    }
+
+    void serve() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(address);
+        logger.info("Агент синхронизации слушает " + serverSocket.getLocalSocketAddress() + ", каталог: " + root);
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                break;
+            }
+            sessions.execute(() -> runSession(socket));
+        }
+    }
+
+    int getLocalPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        sessions.shutdownNow();
+    }
+
+    private void runSession(Socket socket) {
+        String peer = String.valueOf(socket.getRemoteSocketAddress());
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), STREAM_BUFFER));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), STREAM_BUFFER))) {
+            socket.setTcpNoDelay(true);
+            if (!handshake(in, out)) {
+                logger.warning("Агент: отклонено подключение " + peer);
+                return;
+            }
+            logger.info("Агент: подключен клиент " + peer);
+            while (true) {
+                int op = in.read();
+                if (op < 0 || op == QUIT) {
+                    break;
+                }
+                switch ((byte) op) {
+                    case LIST: sendManifest(in, out); break;
+                    case GET: sendFile(in.readUTF(), out); break;
+                    case PUT: receiveFile(in, out); break;
+                    case MOVE: moveFile(in.readUTF(), in.readUTF(), out); break;
+                    case DELETE: deleteFile(in.readUTF(), out); break;
+                    case HASH: hashFile(in.readUTF(), out); break;
+                    default: throw new IOException("Неизвестная команда протокола: " + op);
+                }
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+            out.flush();
+            logger.info("Агент: клиент отключился " + peer);
+        } catch (IOException e) {
+            logger.warning("Агент: сеанс " + peer + " прерван: " + e.getMessage());
+        }
+    }
+
+    private boolean handshake(DataInputStream in, DataOutputStream out) throws IOException {
+        boolean accepted = in.readInt() == MAGIC && in.readInt() == PROTOCOL_VERSION;
+        String clientToken = accepted ? in.readUTF() : "";
+        accepted &= token == null || token.equals(clientToken);
+        out.writeInt(MAGIC);
+        out.writeInt(PROTOCOL_VERSION);
+        out.writeBoolean(accepted);
+        if (!accepted) {
+            out.writeUTF("Доступ запрещен или неподдерживаемая версия протокола");
+            out.flush();
+            return false;
+        }
+        out.writeUTF(root.toString());
+        List<String> rules = PathFilter.collectRules(List.of(root), List.of(), List.of());
+        writeVarInt(out, rules.size());
+        for (String rule : rules) {
+            out.writeUTF(rule);
+        }
+        out.flush();
+        return true;
+    }
+
+    private void sendManifest(DataInputStream in, DataOutputStream out) throws IOException {
+        int ruleCount = readVarInt(in);
+        List<String> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            rules.add(in.readUTF());
+        }
+        Map<String, ScanEntry> files;
+        try (ParallelDirectoryScanner scanner = new ParallelDirectoryScanner(scanThreads, logger, metrics, PathFilter.compile(rules), FileCopier.throttle())) {
+            files = scanner.scan(root);
+        }
+        List<String> paths = new ArrayList<>(files.keySet());
+        paths.sort(SortedTreeWalker.PATH_ORDER);
+        byte[] previous = new byte[0];
+        for (String path : paths) {
+            ScanEntry entry = files.get(path);
+            byte[] name = path.getBytes(StandardCharsets.UTF_8);
+            int common = 0;
+            int limit = Math.min(previous.length, name.length);
+            while (common < limit && previous[common] == name[common]) {
+                common++;
+            }
+            writeVarInt(out, common);
+            writeVarInt(out, name.length - common);
+            out.write(name, common, name.length - common);
+            writeVarLong(out, entry.size);
+            writeVarLong(out, entry.lastModifiedNanos);
+            previous = name;
+        }
+        writeVarInt(out, 0);
+        writeVarInt(out, 0);
+        out.flush();
+        logger.info("Агент: отправлен манифест, файлов: " + paths.size());
+    }
+
+    private void sendFile(String relativePath, DataOutputStream out) throws IOException {
+        Path file;
+        BasicFileAttributes attrs;
+        InputStream fileIn;
+        try {
+            file = resolve(relativePath);
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            fileIn = Files.newInputStream(file);
+        } catch (IOException | RuntimeException e) {
+            out.writeByte(STATUS_ERROR);
+            out.writeUTF(String.valueOf(e.getMessage()));
+            return;
+        }
+        out.writeByte(STATUS_OK);
+        out.writeLong(attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+        try (fileIn) {
+            writeChunks(fileIn, out);
+            metrics.filesCopied.increment();
+            metrics.bytesCopied.add(attrs.size());
+        } catch (IOException e) {
+            if (e instanceof ChunkSourceException) {
+                out.writeByte(STATUS_ERROR);
+                out.writeUTF(String.valueOf(e.getCause().getMessage()));
+                return;
+            }
+            throw e;
+        }
+        out.writeByte(STATUS_OK);
+    }
+
+    private void receiveFile(DataInputStream in, DataOutputStream out) throws IOException {
+        String relativePath = in.readUTF();
+        long mtimeNanos = in.readLong();
+        Path target = null;
+        Path tempFile = null;
+        OutputStream fileOut = null;
+        String error = null;
+        try {
+            target = resolve(relativePath);
+            Files.createDirectories(target.getParent());
+            tempFile = FileCopier.tempFileFor(target);
+            fileOut = new BufferedOutputStream(Files.newOutputStream(tempFile), STREAM_BUFFER);
+        } catch (IOException | RuntimeException e) {
+            error = String.valueOf(e.getMessage());
+        }
+        long received = readChunks(in, fileOut);
+        try {
+            if (fileOut != null) {
+                fileOut.close();
+            }
+            if (received < 0 && error == null) {
+                error = "файл получен не полностью";
+            }
+            if (error == null) {
+                Files.getFileAttributeView(tempFile, BasicFileAttributeView.class)
+                        .setTimes(FileTime.from(mtimeNanos, TimeUnit.NANOSECONDS), null, null);
+                try {
+                    Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                metrics.filesCopied.increment();
+                metrics.bytesCopied.add(received);
+            }
+        } catch (IOException e) {
+            error = e.getMessage();
+        }
+        if (error != null && tempFile != null) {
+            Files.deleteIfExists(tempFile);
+        }
+        writeStatus(out, error);
+    }
+
+    private void moveFile(String from, String to, DataOutputStream out) throws IOException {
+        String error = null;
+        try {
+            Path source = resolve(from);
+            Path target = resolve(to);
+            Files.createDirectories(target.getParent());
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(source, target);
+            }
+            pruneEmptyParents(source.getParent());
+        } catch (IOException | RuntimeException e) {
+            error = String.valueOf(e.getMessage());
+        }
+        writeStatus(out, error);
+    }
+
+    private void deleteFile(String relativePath, DataOutputStream out) throws IOException {
+        String error = null;
+        try {
+            Path target = resolve(relativePath);
+            Files.deleteIfExists(target);
+            pruneEmptyParents(target.getParent());
+        } catch (IOException | RuntimeException e) {
+            error = String.valueOf(e.getMessage());
+        }
+        writeStatus(out, error);
+    }
+
+    private void hashFile(String relativePath, DataOutputStream out) throws IOException {
+        String hash;
+        try {
+            hash = ContentHasher.hashFile(resolve(relativePath));
+        } catch (IOException | RuntimeException e) {
+            writeStatus(out, String.valueOf(e.getMessage()));
+            return;
+        }
+        out.writeByte(STATUS_OK);
+        out.writeUTF(hash);
+    }
+
+    private void pruneEmptyParents(Path dir) {
+        while (dir != null && !dir.equals(root) && dir.startsWith(root)) {
+            try {
+                Files.delete(dir);
+            } catch (IOException e) {
+                return;
+            }
+            dir = dir.getParent();
+        }
+    }
+
+    private Path resolve(String relativePath) throws IOException {
+        Path resolved = root.resolve(relativePath).normalize();
+        if (relativePath.isEmpty() || !resolved.startsWith(root) || resolved.equals(root)) {
+            throw new IOException("Путь вне корневого каталога агента: " + relativePath);
+        }
+        return resolved;
+    }
+
+    private static void writeStatus(DataOutputStream out, String error) throws IOException {
+        if (error == null) {
+            out.writeByte(STATUS_OK);
+        } else {
+            out.writeByte(STATUS_ERROR);
+            out.writeUTF(error);
+        }
+    }
+
+    static class ChunkSourceException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ChunkSourceException(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    static long writeChunks(InputStream source, DataOutputStream out) throws IOException {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        long total = 0;
+        while (true) {
+            int read;
+            try {
+                read = source.read(buffer);
+            } catch (IOException e) {
+                out.writeInt(-1);
+                throw new ChunkSourceException(e);
+            }
+            if (read < 0) {
+                break;
+            }
+            if (read > 0) {
+                FileCopier.throttle().acquireBytes(read);
+                out.writeInt(read);
+                out.write(buffer, 0, read);
+                total += read;
+            }
+        }
+        out.writeInt(0);
+        return total;
+    }
+
+    static long readChunks(DataInputStream in, OutputStream sink) throws IOException {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        long total = 0;
+        boolean sinkFailed = false;
+        while (true) {
+            int length = in.readInt();
+            if (length == 0) {
+                return sinkFailed ? -1 : total;
+            }
+            if (length < 0) {
+                return -1;
+            }
+            if (length > CHUNK_SIZE) {
+                throw new IOException("Неверный размер блока протокола: " + length);
+            }
+            in.readFully(buffer, 0, length);
+            if (sink != null && !sinkFailed) {
+                try {
+                    FileCopier.throttle().acquireBytes(length);
+                    sink.write(buffer, 0, length);
+                } catch (IOException e) {
+                    sinkFailed = true;
+                }
+            }
+            total += length;
+        }
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, value);
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Неверное значение в потоке протокола: " + value);
+        }
+        return (int) value;
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Слишком длинное число в потоке протокола");
+    }
+}
@@ -0,0 +1,155 @@
+package komissia;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class SyncJournal implements Closeable {
+
+    private static final int MAGIC = 0x4B4A524E;
+    private static final int FORMAT_VERSION = 2;
+    private static final byte PLANNED = 'P';
+    private static final byte DONE = 'D';
+    private static final byte FAILED = 'F';
+    private static final int FLUSH_EVERY = 256;
+
+    static class Pending {
+        final String targetType;
+        final String rootKey;
+        final int plannedCount;
+        final List<CopyScheduler.CopyTask> remaining;
+
+        Pending(String targetType, String rootKey, int plannedCount, List<CopyScheduler.CopyTask> remaining) {
+            this.targetType = targetType;
+            this.rootKey = rootKey;
+            this.plannedCount = plannedCount;
+            this.remaining = remaining;
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final DataOutputStream out;
+    private final Map<CopyScheduler.CopyTask, Integer> ids = new IdentityHashMap<>();
+    private int unflushed;
+
+    private SyncJournal(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+    }
+
+    static Path fileFor(Path snapshotDir, Path rootA, Path rootB, Path rootC) {
+        return snapshotDir.resolve("sync-" + UUID.nameUUIDFromBytes(rootKey(rootA, rootB, rootC)
+                .getBytes(StandardCharsets.UTF_8)) + ".journal");
+    }
+
+    static String rootKey(Path rootA, Path rootB, Path rootC) {
+        return rootA.toAbsolutePath().normalize() + "|" + rootB.toAbsolutePath().normalize()
+                + "|" + (rootC != null ? rootC.toAbsolutePath().normalize() : "");
+    }
+
+    static SyncJournal begin(Path file, String rootKey, SyncPlan plan) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        SyncJournal journal = new SyncJournal(file);
+        try {
+            DataOutputStream out = journal.out;
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(plan.targetType);
+            out.writeUTF(rootKey);
+            int id = 0;
+            for (List<CopyScheduler.CopyTask> tasks : List.of(plan.moves, plan.deletions, plan.tasks, plan.links)) {
+                for (CopyScheduler.CopyTask task : tasks) {
+                    journal.ids.put(task, id);
+                    out.writeByte(PLANNED);
+                    out.writeInt(id++);
+                    out.writeUTF(task.operation);
+                    out.writeUTF(task.relativePath);
+                    out.writeUTF(task.source != null ? task.source.toString() : "");
+                    out.writeUTF(task.target.toString());
+                    out.writeUTF(task.reason);
+                    out.writeInt(task.displayIndex);
+                    out.writeLong(task.size);
+                }
+            }
+            out.flush();
+            journal.channel.force(true);
+        } catch (IOException e) {
+            journal.close();
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return journal;
+    }
+
+    synchronized void completed(CopyScheduler.CopyTask task, boolean success) throws IOException {
+        Integer id = ids.get(task);
+        if (id == null) {
+            return;
+        }
+        out.writeByte(success ? DONE : FAILED);
+        out.writeInt(id);
+        if (++unflushed >= FLUSH_EVERY) {
+            out.flush();
+            unflushed = 0;
+        }
+    }
+
+    void finish() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    static Pending load(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version != 1 && version != FORMAT_VERSION) {
+                throw new IOException("Неподдерживаемый формат журнала: " + file);
+            }
+            String targetType = in.readUTF();
+            String rootKey = in.readUTF();
+            Map<Integer, CopyScheduler.CopyTask> planned = new LinkedHashMap<>();
+            int plannedCount = 0;
+            try {
+                while (true) {
+                    byte type = in.readByte();
+                    int id = in.readInt();
+                    if (type == PLANNED) {
+                        plannedCount++;
+                        String operation = version == 1 ? CopyScheduler.CopyTask.COPY : in.readUTF();
+                        String relativePath = in.readUTF();
+                        String source = in.readUTF();
+                        planned.put(id, new CopyScheduler.CopyTask(operation, relativePath,
+                                source.isEmpty() ? null : Paths.get(source), Paths.get(in.readUTF()),
+                                in.readUTF(), in.readInt(), in.readLong()));
+                    } else if (type == DONE) {
+                        planned.remove(id);
+                    } else if (type != FAILED) {
+                        break;
+                    }
+                }
+            } catch (EOFException ignored) {
+            }
+            return new Pending(targetType, rootKey, plannedCount, new ArrayList<>(planned.values()));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package komissia;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SyncMetrics {
+
+    static final String STAGE_SCAN = "scan";
+    static final String STAGE_COMPARE = "compare";
+    static final String STAGE_SYNC = "sync";
+    static final String STAGE_COPY_FILE = "copy_file";
+    static final String STAGE_HASH_FILE = "hash_file";
+
+    static class LatencyHistogram {
+        static final double[] BOUNDS_SECONDS = {0.0001, 0.0005, 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10, 60, 300};
+
+        final LongAdder[] buckets = new LongAdder[BOUNDS_SECONDS.length + 1];
+        final LongAdder count = new LongAdder();
+        final LongAdder sumNanos = new LongAdder();
+
+        LatencyHistogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            double seconds = nanos / 1e9;
+            int bucket = 0;
+            while (bucket < BOUNDS_SECONDS.length && seconds > BOUNDS_SECONDS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+            count.increment();
+            sumNanos.add(nanos);
+        }
+    }
+
+    final long startedNanos = System.nanoTime();
+    final LongAdder dirsScanned = new LongAdder();
+    final LongAdder filesScanned = new LongAdder();
+    final LongAdder filesCopied = new LongAdder();
+    final LongAdder bytesCopied = new LongAdder();
+    final LongAdder filesHashed = new LongAdder();
+    final LongAdder bytesHashed = new LongAdder();
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private long progressSampleNanos = startedNanos;
+    private long progressSampleScanned;
+    private long progressSampleBytes;
+
+    long start() {
+        return System.nanoTime();
+    }
+
+    void stop(String stage, long startNanos) {
+        latencies.computeIfAbsent(stage, k -> new LatencyHistogram()).record(System.nanoTime() - startNanos);
+    }
+
+    void recordError(String stage, Throwable error) {
+        recordError(stage, error.getClass().getSimpleName());
+    }
+
+    void recordError(String stage, String type) {
+        errors.computeIfAbsent(stage + ":" + type, k -> new LongAdder()).increment();
+    }
+
+    long totalErrors() {
+        long total = 0;
+        for (LongAdder adder : errors.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    double elapsedSeconds() {
+        return (System.nanoTime() - startedNanos) / 1e9;
+    }
+
+    void writePrometheus(Writer out) throws IOException {
+        double elapsed = elapsedSeconds();
+        writeCounter(out, "komissia_dirs_scanned_total", "Directories scanned", dirsScanned.sum());
+        writeCounter(out, "komissia_files_scanned_total", "Files scanned", filesScanned.sum());
+        writeCounter(out, "komissia_files_copied_total", "Files copied", filesCopied.sum());
+        writeCounter(out, "komissia_bytes_copied_total", "Bytes copied", bytesCopied.sum());
+        writeCounter(out, "komissia_files_hashed_total", "Files hashed", filesHashed.sum());
+        writeCounter(out, "komissia_bytes_hashed_total", "Bytes hashed", bytesHashed.sum());
+        out.write("# HELP komissia_uptime_seconds Seconds since start\n# TYPE komissia_uptime_seconds gauge\n");
+        out.write("komissia_uptime_seconds " + format(elapsed) + "\n");
+
+        out.write("# HELP komissia_errors_total Errors by stage and type\n# TYPE komissia_errors_total counter\n");
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(errors).entrySet()) {
+            String[] stageAndType = e.getKey().split(":", 2);
+            out.write("komissia_errors_total{stage=\"" + stageAndType[0] + "\",type=\"" + stageAndType[1] + "\"} "
+                    + e.getValue().sum() + "\n");
+        }
+
+        out.write("# HELP komissia_stage_duration_seconds Stage latency\n# TYPE komissia_stage_duration_seconds histogram\n");
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(latencies).entrySet()) {
+            String stage = e.getKey();
+            LatencyHistogram histogram = e.getValue();
+            long cumulative = 0;
+            for (int i = 0; i < LatencyHistogram.BOUNDS_SECONDS.length; i++) {
+                cumulative += histogram.buckets[i].sum();
+                out.write("komissia_stage_duration_seconds_bucket{stage=\"" + stage + "\",le=\""
+                        + BigDecimal.valueOf(LatencyHistogram.BOUNDS_SECONDS[i]).stripTrailingZeros().toPlainString() + "\"} " + cumulative + "\n");
+            }
+            cumulative += histogram.buckets[LatencyHistogram.BOUNDS_SECONDS.length].sum();
+            out.write("komissia_stage_duration_seconds_bucket{stage=\"" + stage + "\",le=\"+Inf\"} " + cumulative + "\n");
+            out.write("komissia_stage_duration_seconds_sum{stage=\"" + stage + "\"} " + format(histogram.sumNanos.sum() / 1e9) + "\n");
+            out.write("komissia_stage_duration_seconds_count{stage=\"" + stage + "\"} " + histogram.count.sum() + "\n");
+        }
+    }
+
+    void writeJson(Writer out) throws IOException {
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"uptimeSeconds\":").append(format(elapsedSeconds()))
+                .append(",\"dirsScanned\":").append(dirsScanned.sum())
+                .append(",\"filesScanned\":").append(filesScanned.sum())
+                .append(",\"filesCopied\":").append(filesCopied.sum())
+                .append(",\"bytesCopied\":").append(bytesCopied.sum())
+                .append(",\"filesHashed\":").append(filesHashed.sum())
+                .append(",\"bytesHashed\":").append(bytesHashed.sum())
+                .append(",\"errors\":{");
+        boolean first = true;
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(errors).entrySet()) {
+            json.append(first ? "" : ",").append('"').append(e.getKey()).append("\":").append(e.getValue().sum());
+            first = false;
+        }
+        json.append("},\"stages\":{");
+        first = true;
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(latencies).entrySet()) {
+            LatencyHistogram histogram = e.getValue();
+            json.append(first ? "" : ",").append('"').append(e.getKey()).append("\":{\"count\":").append(histogram.count.sum())
+                    .append(",\"sumSeconds\":").append(format(histogram.sumNanos.sum() / 1e9)).append(",\"buckets\":[");
+            for (int i = 0; i < histogram.buckets.length; i++) {
+                json.append(i > 0 ? "," : "").append(histogram.buckets[i].sum());
+            }
+            json.append("]}");
+            first = false;
+        }
+        json.append("}}\n");
+        out.write(json.toString());
+    }
+
+    synchronized String progressLine() {
+        long now = System.nanoTime();
+        long scanned = filesScanned.sum();
+        long copied = bytesCopied.sum();
+        double window = Math.max((now - progressSampleNanos) / 1e9, 0.001);
+        double scanRate = (scanned - progressSampleScanned) / window;
+        double copyRate = (copied - progressSampleBytes) / 1048576.0 / window;
+        progressSampleNanos = now;
+        progressSampleScanned = scanned;
+        progressSampleBytes = copied;
+        return String.format(Locale.ROOT, "Сканировано: %d файлов (%.0f/с) | Скопировано: %d файлов, %.1f МБ (%.1f МБ/с) | Ошибки: %d",
+                scanned, scanRate, filesCopied.sum(), copied / 1048576.0, copyRate, totalErrors());
+    }
+
+    private static void writeCounter(Writer out, String name, String help, long value) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n# TYPE " + name + " counter\n" + name + " " + value + "\n");
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.6g", value);
+    }
+}
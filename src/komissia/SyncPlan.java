@@ -0,0 +1,238 @@
+package komissia;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+public class SyncPlan {
+
+    private static final String HEADER = "KOMISSIA-PLAN\t2";
+    private static final String HEADER_V1 = "KOMISSIA-PLAN\t1";
+
+    final String targetType;
+    final List<CopyScheduler.CopyTask> tasks = new ArrayList<>();
+    final List<CopyScheduler.CopyTask> moves = new ArrayList<>();
+    final List<CopyScheduler.CopyTask> deletions = new ArrayList<>();
+    final List<CopyScheduler.CopyTask> links = new ArrayList<>();
+    final Map<CopyScheduler.CopyTask, Long> plannedModified = new IdentityHashMap<>();
+    int errorCount = 0;
+    Path[] roots = new Path[3];
+
+    SyncPlan(String targetType) {
+        this.targetType = targetType;
+    }
+
+    boolean isEmpty() {
+        return tasks.isEmpty() && moves.isEmpty() && deletions.isEmpty() && links.isEmpty();
+    }
+
+    long totalBytes() {
+        long bytes = 0;
+        for (CopyScheduler.CopyTask task : tasks) {
+            bytes += task.size;
+        }
+        return bytes;
+    }
+
+    long linkedBytes() {
+        long bytes = 0;
+        for (CopyScheduler.CopyTask task : links) {
+            bytes += task.size;
+        }
+        return bytes;
+    }
+
+    Map<String, long[]> perDirectory() {
+        Map<String, long[]> directories = new TreeMap<>(SortedTreeWalker.PATH_ORDER);
+        for (List<CopyScheduler.CopyTask> list : List.of(tasks, moves, deletions, links)) {
+            for (CopyScheduler.CopyTask task : list) {
+                int slash = task.relativePath.lastIndexOf('/');
+                long[] counts = directories.computeIfAbsent(slash < 0 ? "" : task.relativePath.substring(0, slash),
+                        k -> new long[4]);
+                counts[list == tasks || list == links ? 0 : list == moves ? 1 : 2]++;
+                if (list == tasks) {
+                    counts[3] += task.size;
+                }
+            }
+        }
+        return directories;
+    }
+
+    List<String> summary(int maxDirectories, long estimatedNanos) {
+        List<String> lines = new ArrayList<>();
+        lines.add("План " + targetType + ": копирований " + tasks.size() + " (" + formatBytes(totalBytes()) + ")"
+                + ", перемещений " + moves.size() + ", удалений " + deletions.size());
+        if (!links.isEmpty()) {
+            lines.add("Дубликаты: жестких ссылок " + links.size() + " вместо копирования " + formatBytes(linkedBytes()));
+        }
+        Map<String, long[]> directories = perDirectory();
+        List<Map.Entry<String, long[]>> largest = new ArrayList<>(directories.entrySet());
+        largest.sort((x, y) -> Long.compare(y.getValue()[3], x.getValue()[3]));
+        for (Map.Entry<String, long[]> entry : largest.subList(0, Math.min(maxDirectories, largest.size()))) {
+            long[] counts = entry.getValue();
+            StringBuilder line = new StringBuilder("  ").append(entry.getKey().isEmpty() ? "." : entry.getKey())
+                    .append(": копирований ").append(counts[0]).append(" (").append(formatBytes(counts[3])).append(')');
+            if (counts[1] > 0) {
+                line.append(", перемещений ").append(counts[1]);
+            }
+            if (counts[2] > 0) {
+                line.append(", удалений ").append(counts[2]);
+            }
+            lines.add(line.toString());
+        }
+        if (largest.size() > maxDirectories) {
+            lines.add("  ... и еще каталогов: " + (largest.size() - maxDirectories));
+        }
+        lines.add("Оценка времени: " + (estimatedNanos < 0 ? "нет данных о скорости копирования"
+                : formatDuration(estimatedNanos)));
+        if (errorCount > 0) {
+            lines.add("Ошибок при планировании: " + errorCount);
+        }
+        return lines;
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " Б";
+        }
+        String[] units = {"КБ", "МБ", "ГБ", "ТБ"};
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format(Locale.ROOT, "%.1f %s", value, units[unit]);
+    }
+
+    static String formatDuration(long nanos) {
+        long seconds = Math.max(1, (nanos + 999_999_999L) / 1_000_000_000L);
+        return String.format(Locale.ROOT, "%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer out = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            out.write(HEADER + "\n");
+            out.write("type\t" + targetType + "\n");
+            for (int i = 0; i < roots.length; i++) {
+                if (roots[i] != null) {
+                    out.write("root\t" + (char) ('A' + i) + "\t" + escape(roots[i].toAbsolutePath().normalize().toString()) + "\n");
+                }
+            }
+            for (List<CopyScheduler.CopyTask> list : List.of(moves, deletions, tasks, links)) {
+                for (CopyScheduler.CopyTask task : list) {
+                    out.write(String.join("\t", task.operation, String.valueOf(task.displayIndex), String.valueOf(task.size),
+                            escape(task.relativePath), task.source != null ? escape(task.source.toAbsolutePath().toString()) : "",
+                            escape(task.target.toAbsolutePath().toString()), escape(task.reason),
+                            String.valueOf(task.operation.equals(CopyScheduler.CopyTask.LINK) ? -1 : lastModifiedMillis(subjectOf(task)))));
+                    out.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static SyncPlan load(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = in.readLine();
+            if (!HEADER.equals(header) && !HEADER_V1.equals(header)) {
+                throw new IOException("Неподдерживаемый формат плана: " + file);
+            }
+            String typeLine = in.readLine();
+            if (typeLine == null || !typeLine.startsWith("type\t")) {
+                throw new IOException("В плане не указано направление: " + file);
+            }
+            SyncPlan plan = new SyncPlan(typeLine.substring("type\t".length()));
+            String line;
+            int lineNumber = 2;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", -1);
+                try {
+                    if (fields[0].equals("root")) {
+                        plan.roots[fields[1].charAt(0) - 'A'] = Paths.get(unescape(fields[2]));
+                        continue;
+                    }
+                    CopyScheduler.CopyTask task = new CopyScheduler.CopyTask(fields[0], unescape(fields[3]),
+                            fields[4].isEmpty() ? null : Paths.get(unescape(fields[4])), Paths.get(unescape(fields[5])),
+                            unescape(fields[6]), Integer.parseInt(fields[1]), Long.parseLong(fields[2]));
+                    if (fields.length > 7 && Long.parseLong(fields[7]) >= 0) {
+                        plan.plannedModified.put(task, Long.parseLong(fields[7]));
+                    }
+                    switch (task.operation) {
+                        case CopyScheduler.CopyTask.COPY: plan.tasks.add(task); break;
+                        case CopyScheduler.CopyTask.MOVE: plan.moves.add(task); break;
+                        case CopyScheduler.CopyTask.DELETE: plan.deletions.add(task); break;
+                        case CopyScheduler.CopyTask.LINK: plan.links.add(task); break;
+                        default: throw new IllegalArgumentException("неизвестная операция " + task.operation);
+                    }
+                } catch (RuntimeException e) {
+                    throw new IOException("Ошибка в строке " + lineNumber + " плана " + file + ": " + e.getMessage(), e);
+                }
+            }
+            return plan;
+        }
+    }
+
+    static Path subjectOf(CopyScheduler.CopyTask task) {
+        return task.operation.equals(CopyScheduler.CopyTask.DELETE) ? task.target : task.source;
+    }
+
+    static long lastModifiedMillis(Path file) {
+        try {
+            return Files.getLastModifiedTime(file, LinkOption.NOFOLLOW_LINKS).toMillis();
+        } catch (IOException | SecurityException e) {
+            return -1;
+        }
+    }
+
+    static String escape(String value) {
+        StringBuilder sb = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = c == '\\' ? "\\\\" : c == '\t' ? "\\t" : c == '\n' ? "\\n" : c == '\r' ? "\\r" : null;
+            if (replacement != null && sb == null) {
+                sb = new StringBuilder(value.length() + 8).append(value, 0, i);
+            }
+            if (sb != null) {
+                if (replacement != null) {
+                    sb.append(replacement);
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb != null ? sb.toString() : value;
+    }
+
+    static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package komissia;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TransferEstimator {
+
+    static final String FILE_NAME = "throughput.history";
+    private static final int MAX_RUNS = 20;
+
+    private final Path file;
+    private final List<long[]> runs = new ArrayList<>();
+
+    TransferEstimator(Path snapshotDir) {
+        this.file = snapshotDir.resolve(FILE_NAME);
+    }
+
+    void load() throws IOException {
+        runs.clear();
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length != 3) {
+                continue;
+            }
+            try {
+                runs.add(new long[]{Long.parseLong(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2])});
+            } catch (NumberFormatException ignored) {
+            }
+        }
+    }
+
+    void record(long bytes, long files, long nanos) throws IOException {
+        if (files <= 0 || nanos <= 0) {
+            return;
+        }
+        runs.add(new long[]{bytes, files, nanos});
+        while (runs.size() > MAX_RUNS) {
+            runs.remove(0);
+        }
+        StringBuilder text = new StringBuilder();
+        for (long[] run : runs) {
+            text.append(run[0]).append(' ').append(run[1]).append(' ').append(run[2]).append('\n');
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tempFile = file.resolveSibling(FILE_NAME + ".tmp");
+        Files.write(tempFile, text.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    long estimateNanos(long bytes, long files) {
+        if (runs.isEmpty()) {
+            return -1;
+        }
+        if (bytes == 0 && files == 0) {
+            return 0;
+        }
+        double bb = 0, bf = 0, ff = 0, bt = 0, ft = 0;
+        long totalBytes = 0, totalFiles = 0, totalNanos = 0;
+        for (long[] run : runs) {
+            double b = run[0], f = run[1], t = run[2];
+            bb += b * b;
+            bf += b * f;
+            ff += f * f;
+            bt += b * t;
+            ft += f * t;
+            totalBytes += run[0];
+            totalFiles += run[1];
+            totalNanos += run[2];
+        }
+        double determinant = bb * ff - bf * bf;
+        if (runs.size() >= 2 && determinant > 1e-9 * bb * ff) {
+            double perByte = (bt * ff - ft * bf) / determinant;
+            double perFile = (ft * bb - bt * bf) / determinant;
+            if (perByte >= 0 && perFile >= 0) {
+                return (long) (bytes * perByte + files * perFile);
+            }
+        }
+        if (totalBytes > 0) {
+            return (long) ((double) totalNanos / totalBytes * bytes);
+        }
+        return (long) ((double) totalNanos / totalFiles * files);
+    }
+}
@@ -0,0 +1,187 @@
+package komissia;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+public class TreeRenderer {
+
+    private static final String[] ROOT = new String[0];
+    private static final String NEW_LINE = System.lineSeparator();
+
+    private final ComparisonTable table;
+    private final Writer out;
+    private final int pageSize;
+    private final int collapseThreshold;
+    private final BooleanSupplier nextPage;
+    private final DecimalFormat countFormat;
+    private String[] indents = new String[0];
+    private int linesOnPage;
+    private boolean stopped;
+
+    public TreeRenderer(ComparisonTable table, Writer out, int pageSize, int collapseThreshold, BooleanSupplier nextPage) {
+        this.table = table;
+        this.out = out;
+        this.pageSize = pageSize;
+        this.collapseThreshold = collapseThreshold;
+        this.nextPage = nextPage;
+        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+        symbols.setGroupingSeparator(' ');
+        this.countFormat = new DecimalFormat("#,##0", symbols);
+    }
+
+    boolean render(String title, boolean forA, boolean showModNew, boolean showIdentical) throws IOException {
+        stopped = false;
+        out.write(NEW_LINE);
+        writeLine("--- " + title + " ---");
+
+        Map<String, int[]> subtreeCounts = collapseThreshold > 0
+                ? countSubtrees(forA, showModNew, showIdentical) : Map.of();
+
+        String[] stack = new String[8];
+        int depth = 0;
+        int lastDirId = -1;
+        boolean skipDir = false;
+        String collapsedPrefix = null;
+        boolean itemsDisplayed = false;
+        StringBuilder line = new StringBuilder(128);
+
+        for (int row = 0; row < table.size() && !stopped; row++) {
+            FileStatus status = table.status(row);
+            if (!isVisible(row, status, forA, showModNew, showIdentical)) {
+                continue;
+            }
+
+            int dirId = table.directoryId(row);
+            if (dirId != lastDirId) {
+                lastDirId = dirId;
+                String dir = table.directoryName(dirId);
+                if (collapsedPrefix != null && (dir.equals(collapsedPrefix) || dir.startsWith(collapsedPrefix + "/"))) {
+                    skipDir = true;
+                    continue;
+                }
+                skipDir = false;
+                collapsedPrefix = null;
+
+                String[] parts = dir.isEmpty() ? ROOT : dir.split("/");
+                int common = 0;
+                while (common < depth && common < parts.length && stack[common].equals(parts[common])) {
+                    common++;
+                }
+                depth = common;
+                if (stack.length < parts.length) {
+                    stack = Arrays.copyOf(stack, parts.length * 2);
+                }
+                for (int i = common; i < parts.length && !stopped; i++) {
+                    line.setLength(0);
+                    line.append(indent(i)).append("+ ").append(parts[i]);
+                    if (collapseThreshold > 0) {
+                        String prefix = String.join("/", Arrays.asList(parts).subList(0, i + 1));
+                        int[] counts = subtreeCounts.get(prefix);
+                        if (counts != null && counts[0] > collapseThreshold) {
+                            line.append(" (файлов: ").append(countFormat.format(counts[0])).append(", изменено: ")
+                                    .append(countFormat.format(counts[1])).append(')');
+                            writeLine(line);
+                            collapsedPrefix = prefix;
+                            skipDir = true;
+                            itemsDisplayed = true;
+                            break;
+                        }
+                    }
+                    writeLine(line);
+                    stack[depth++] = parts[i];
+                }
+            }
+            if (skipDir || stopped) {
+                continue;
+            }
+
+            String displayStatus = status.label;
+            if (forA && status == FileStatus.MODIFIED_B_NEWER) {
+                displayStatus = "УСТАРЕЛ (B новее)";
+            } else if (!forA && status == FileStatus.MODIFIED_A_NEWER) {
+                displayStatus = "УСТАРЕЛ (А новее)";
+            }
+            line.setLength(0);
+            line.append(indent(depth)).append("- ").append(table.fileName(row)).append(" [").append(displayStatus);
+            int displayIndex = table.displayIndex(row);
+            if (displayIndex > 0) {
+                line.append(" (№").append(displayIndex).append(')');
+            }
+            line.append(']');
+            writeLine(line);
+            itemsDisplayed = true;
+        }
+        if (!itemsDisplayed && !stopped) {
+            writeLine("(Нет файлов для отображения с этим фильтром)");
+        }
+        out.flush();
+        return !stopped;
+    }
+
+    private boolean isVisible(int row, FileStatus status, boolean forA, boolean showModNew, boolean showIdentical) {
+        boolean byFilter = (showModNew && (status.isNew() || status.isModified() || status.isDeleted()))
+                || (showIdentical && status == FileStatus.IDENTICAL);
+        if (!byFilter) {
+            return false;
+        }
+        boolean existsInTree = forA ? table.inA(row) : table.inB(row);
+        return existsInTree || status.isModified() || status == FileStatus.IDENTICAL;
+    }
+
+    private Map<String, int[]> countSubtrees(boolean forA, boolean showModNew, boolean showIdentical) {
+        int[][] perDir = new int[table.directoryCount()][2];
+        for (int row = 0; row < table.size(); row++) {
+            FileStatus status = table.status(row);
+            if (isVisible(row, status, forA, showModNew, showIdentical)) {
+                int[] counts = perDir[table.directoryId(row)];
+                counts[0]++;
+                if (status.isNew() || status.isModified() || status.isDeleted()) {
+                    counts[1]++;
+                }
+            }
+        }
+        Map<String, int[]> subtrees = new HashMap<>();
+        for (int dirId = 0; dirId < perDir.length; dirId++) {
+            if (perDir[dirId][0] == 0) {
+                continue;
+            }
+            String dir = table.directoryName(dirId);
+            while (!dir.isEmpty()) {
+                int[] counts = subtrees.computeIfAbsent(dir, k -> new int[2]);
+                counts[0] += perDir[dirId][0];
+                counts[1] += perDir[dirId][1];
+                int slash = dir.lastIndexOf('/');
+                dir = slash < 0 ? "" : dir.substring(0, slash);
+            }
+        }
+        return subtrees;
+    }
+
+    private String indent(int depth) {
+        if (depth >= indents.length) {
+            String[] grown = Arrays.copyOf(indents, Math.max(depth + 1, indents.length * 2));
+            for (int i = indents.length; i < grown.length; i++) {
+                grown[i] = "  ".repeat(i);
+            }
+            indents = grown;
+        }
+        return indents[depth];
+    }
+
+    private void writeLine(CharSequence text) throws IOException {
+        out.append(text).append(NEW_LINE);
+        if (pageSize > 0 && ++linesOnPage >= pageSize) {
+            linesOnPage = 0;
+            out.flush();
+            if (!nextPage.getAsBoolean()) {
+                stopped = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package komissia;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class DedupDeltaTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void deltaUpdateDoesNotRewriteLinkedDuplicates() throws IOException {
+        Path a = Files.createDirectories(root.resolve("A"));
+        Path b = Files.createDirectories(root.resolve("B"));
+        Path c = Files.createDirectories(root.resolve("C"));
+        byte[] original = new byte[256 << 10];
+        Arrays.fill(original, (byte) 'x');
+        FileTime originalTime = FileTime.fromMillis(1_600_000_000_000L);
+        Files.write(a.resolve("one.bin"), original);
+        Files.write(a.resolve("two.bin"), original);
+        Files.setLastModifiedTime(a.resolve("one.bin"), originalTime);
+        Files.setLastModifiedTime(a.resolve("two.bin"), originalTime);
+
+        assertEquals(0, run(a, b, c, "--direction=MERGE_TO_C", "--dedup"));
+        assumeTrue(linkCount(c.resolve("two.bin")) == 2, "жесткие ссылки не поддерживаются");
+
+        byte[] changed = original.clone();
+        Arrays.fill(changed, 1000, 2000, (byte) 'y');
+        Files.write(a.resolve("one.bin"), changed);
+        Files.setLastModifiedTime(a.resolve("one.bin"), FileTime.fromMillis(originalTime.toMillis() + 60_000));
+
+        assertEquals(0, run(a, c, null, "--direction=A_TO_B", "--delta", "--delta-min-mb=0"));
+        assertArrayEquals(changed, Files.readAllBytes(c.resolve("one.bin")));
+        assertArrayEquals(original, Files.readAllBytes(c.resolve("two.bin")));
+        assertEquals(originalTime, Files.getLastModifiedTime(c.resolve("two.bin")));
+    }
+
+    private int run(Path a, Path b, Path c, String... options) throws IOException {
+        List<String> args = new ArrayList<>(List.of(a.toString(), b.toString()));
+        if (c != null) {
+            args.add(c.toString());
+        }
+        args.add("--mode=sync");
+        args.add("--log=" + root.resolve("sync.log"));
+        args.add("--snapshot-dir=" + root.resolve("snapshots"));
+        args.add("--checksum-cache=" + root.resolve("checksums.cache"));
+        args.addAll(List.of(options));
+        DirectorySyncAppSimple app = new DirectorySyncAppSimple();
+        app.parseArguments(args.toArray(new String[0]));
+        app.setupLogger();
+        try {
+            return app.runBatchMode();
+        } finally {
+            app.closeLogger();
+        }
+    }
+
+    private static int linkCount(Path file) throws IOException {
+        try {
+            return (Integer) Files.getAttribute(file, "unix:nlink", LinkOption.NOFOLLOW_LINKS);
+        } catch (UnsupportedOperationException e) {
+            return 1;
+        }
+    }
+}